@@ -0,0 +1,51 @@
+package plc.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plc.project.Analyzer;
+import plc.project.Ast;
+import plc.project.Lexer;
+import plc.project.Parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time {@link Analyzer#visit(Ast.Source)} takes on a parsed
+ * program. The analyzer overwrites the variables, functions and types it
+ * resolved on a previous run, so the same AST is reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"loops", "arithmetic", "generated"})
+    public String program;
+
+    private Ast.Source ast;
+
+    @Setup
+    public void setup() {
+        ast = new Parser(new Lexer(Programs.load(program)).lex()).parseSource();
+    }
+
+    @Benchmark
+    public Analyzer analyze() {
+        Analyzer analyzer = new Analyzer(new plc.project.Scope(null));
+        analyzer.visit(ast);
+        return analyzer;
+    }
+
+}
@@ -0,0 +1,74 @@
+package plc.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plc.project.Ast;
+import plc.project.AstArena;
+import plc.project.Lexer;
+import plc.project.Parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares walking an {@link AstArena} in place against walking the object
+ * tree it was built from, by counting the nodes of each, in trees per second.
+ * The setup also prints the bytes per node each takes: the heap the object
+ * tree retains after a full collection, and {@link AstArena#getByteSize()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArenaBenchmark {
+
+    @Param({"loops", "arithmetic", "mixed", "generated"})
+    public String program;
+
+    private Ast.Source ast;
+    private AstArena arena;
+    private int source;
+
+    @Setup
+    public void setup() {
+        String input = Programs.scaled(program, 100);
+        long before = used();
+        ast = new Parser(new Lexer(input).lex()).parseSource();
+        long tree = used() - before;
+        arena = new AstArena();
+        source = arena.add(ast);
+        arena.trim();
+        System.out.printf("%d nodes: tree %.1f bytes/node, arena %.1f bytes/node%n", arena.size(),
+                (double) tree / arena.size(), (double) arena.getByteSize() / arena.size());
+    }
+
+    @Benchmark
+    public int objectTree() {
+        return NodeCounter.count(ast);
+    }
+
+    @Benchmark
+    public int arena() {
+        return arena.visit(source, new ArenaCounter(arena));
+    }
+
+    //heap in use after a full collection, so only reachable objects are counted
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
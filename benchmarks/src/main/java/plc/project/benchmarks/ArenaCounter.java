@@ -0,0 +1,111 @@
+package plc.project.benchmarks;
+
+import plc.project.AstArena;
+
+/**
+ * Counts the nodes under a node of an {@link AstArena}, reading the arena in
+ * place. {@link ArenaBenchmark} compares it with {@link NodeCounter} on the
+ * object tree the arena was built from.
+ */
+final class ArenaCounter implements AstArena.Visitor<Integer> {
+
+    private final AstArena arena;
+
+    ArenaCounter(AstArena arena) {
+        this.arena = arena;
+    }
+
+    private int count(int node) {
+        return node == -1 ? 0 : arena.visit(node, this);
+    }
+
+    private int count(int node, int list) {
+        int count = 0;
+        int size = arena.getListSize(node, list);
+        for (int i = 0; i < size; i++) {
+            count += count(arena.getListItem(node, list, i));
+        }
+        return count;
+    }
+
+    @Override
+    public Integer visitSource(int node) {
+        return 1 + count(node, AstArena.FIELDS) + count(node, AstArena.METHODS);
+    }
+
+    @Override
+    public Integer visitField(int node) {
+        return 1 + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitMethod(int node) {
+        return 1 + count(node, AstArena.STATEMENTS);
+    }
+
+    @Override
+    public Integer visitExpression(int node) {
+        return 1 + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitDeclaration(int node) {
+        return 1 + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitAssignment(int node) {
+        return 1 + count(arena.getReceiver(node)) + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitIf(int node) {
+        return 1 + count(arena.getCondition(node)) + count(node, AstArena.THEN) + count(node, AstArena.ELSE);
+    }
+
+    @Override
+    public Integer visitFor(int node) {
+        return 1 + count(arena.getValue(node)) + count(node, AstArena.STATEMENTS);
+    }
+
+    @Override
+    public Integer visitWhile(int node) {
+        return 1 + count(arena.getCondition(node)) + count(node, AstArena.STATEMENTS);
+    }
+
+    @Override
+    public Integer visitReturn(int node) {
+        return 1 + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitError(int node) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitLiteral(int node) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitGroup(int node) {
+        return 1 + count(arena.getValue(node));
+    }
+
+    @Override
+    public Integer visitBinary(int node) {
+        return 1 + count(arena.getLeft(node)) + count(arena.getRight(node));
+    }
+
+    @Override
+    public Integer visitAccess(int node) {
+        return 1 + count(arena.getReceiver(node));
+    }
+
+    @Override
+    public Integer visitFunction(int node) {
+        return 1 + count(arena.getReceiver(node)) + count(node, AstArena.ARGUMENTS);
+    }
+
+}
@@ -0,0 +1,61 @@
+package plc.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plc.project.Analyzer;
+import plc.project.Ast;
+import plc.project.Environment;
+import plc.project.Interpreter;
+import plc.project.Lexer;
+import plc.project.Parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running an analyzed program in the {@link Interpreter}, in
+ * program runs per second, as well as the whole pipeline from source text to
+ * result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({"loops", "arithmetic"})
+    public String program;
+
+    private String source;
+    private Ast.Source ast;
+
+    @Setup
+    public void setup() {
+        source = Programs.load(program);
+        ast = new Parser(new Lexer(source).lex()).parseSource();
+        new Analyzer(new plc.project.Scope(null)).visit(ast);
+    }
+
+    @Benchmark
+    public Environment.PlcObject interpret() {
+        return new Interpreter(new plc.project.Scope(null)).visit(ast);
+    }
+
+    @Benchmark
+    public Environment.PlcObject pipeline() {
+        Ast.Source ast = new Parser(new Lexer(source).lex()).parseSource();
+        new Analyzer(new plc.project.Scope(null)).visit(ast);
+        return new Interpreter(new plc.project.Scope(null)).visit(ast);
+    }
+
+}
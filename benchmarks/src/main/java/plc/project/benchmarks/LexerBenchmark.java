@@ -0,0 +1,90 @@
+package plc.project.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plc.project.Lexer;
+import plc.project.Token;
+import plc.project.TokenBuffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Lexer#lex()} and {@link Lexer#lexBuffer()}, reporting the
+ * {@code tokens} counter in tokens per second next to the usual score.
+ * {@code lexPooled} reuses this thread's lexer and a token buffer, as a
+ * service lexing many small inputs would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({"loops", "arithmetic", "mixed", "generated"})
+    public String program;
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private String source;
+    private int tokens;
+
+    @Setup
+    public void setup() {
+        source = Programs.scaled(program, copies);
+        tokens = new Lexer(source).lex().size();
+    }
+
+    @Benchmark
+    public List<Token> lex(Tokens counter) {
+        counter.tokens += tokens;
+        return new Lexer(source).lex();
+    }
+
+    @Benchmark
+    public TokenBuffer lexBuffer(Tokens counter) {
+        counter.tokens += tokens;
+        return new Lexer(source).lexBuffer();
+    }
+
+    @Benchmark
+    public TokenBuffer lexPooled(Tokens counter, Reused reused) {
+        counter.tokens += tokens;
+        return Lexer.pooled(source).lexBuffer(reused.buffer);
+    }
+
+    @State(Scope.Thread)
+    public static class Reused {
+
+        private final TokenBuffer buffer = new TokenBuffer("");
+
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Tokens {
+
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+
+    }
+
+}
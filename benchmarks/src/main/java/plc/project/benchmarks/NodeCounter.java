@@ -0,0 +1,101 @@
+package plc.project.benchmarks;
+
+import plc.project.Ast;
+
+import java.util.List;
+
+/**
+ * Counts the nodes of an AST, so parser throughput can be reported in nodes
+ * per second. {@link DispatchBenchmark} extends it to compare ways of
+ * dispatching {@link Ast.Visitor#visit(Ast)}.
+ */
+class NodeCounter implements Ast.Visitor<Integer> {
+
+    static int count(Ast ast) {
+        return new NodeCounter().visit(ast);
+    }
+
+    @Override
+    public Integer visit(Ast.Source ast) {
+        return 1 + sum(ast.getFields()) + sum(ast.getMethods());
+    }
+
+    @Override
+    public Integer visit(Ast.Field ast) {
+        return 1 + (ast.getValue().isPresent() ? visit(ast.getValue().get()) : 0);
+    }
+
+    @Override
+    public Integer visit(Ast.Method ast) {
+        return 1 + sum(ast.getStatements());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Expression ast) {
+        return 1 + visit(ast.getExpression());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Declaration ast) {
+        return 1 + (ast.getValue().isPresent() ? visit(ast.getValue().get()) : 0);
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Assignment ast) {
+        return 1 + visit(ast.getReceiver()) + visit(ast.getValue());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.If ast) {
+        return 1 + visit(ast.getCondition()) + sum(ast.getThenStatements()) + sum(ast.getElseStatements());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.For ast) {
+        return 1 + visit(ast.getValue()) + sum(ast.getStatements());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.While ast) {
+        return 1 + visit(ast.getCondition()) + sum(ast.getStatements());
+    }
+
+    @Override
+    public Integer visit(Ast.Stmt.Return ast) {
+        return 1 + visit(ast.getValue());
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Literal ast) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Group ast) {
+        return 1 + visit(ast.getExpression());
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Binary ast) {
+        return 1 + visit(ast.getLeft()) + visit(ast.getRight());
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Access ast) {
+        return 1 + (ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : 0);
+    }
+
+    @Override
+    public Integer visit(Ast.Expr.Function ast) {
+        return 1 + (ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : 0) + sum(ast.getArguments());
+    }
+
+    private int sum(List<? extends Ast> asts) {
+        int count = 0;
+        for (Ast ast : asts) {
+            count += visit(ast);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,108 @@
+package plc.project.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import plc.project.Ast;
+import plc.project.Lexer;
+import plc.project.ParallelParser;
+import plc.project.Parser;
+import plc.project.Token;
+import plc.project.TokenBuffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Parser#parseSource()} on already lexed tokens, reporting
+ * the {@code nodes} counter in AST nodes per second. The last two benchmarks
+ * include lexing, once through a complete token list and once with the
+ * parser pulling tokens straight from the lexer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"loops", "arithmetic", "mixed", "generated"})
+    public String program;
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private String source;
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+    private int nodes;
+
+    @Setup
+    public void setup() {
+        source = Programs.scaled(program, copies);
+        tokens = new Lexer(source).lex();
+        buffer = new Lexer(source).lexBuffer();
+        nodes = NodeCounter.count(new Parser(tokens).parseSource());
+    }
+
+    @Benchmark
+    public Ast.Source parseList(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(tokens).parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source parseBuffer(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(buffer).parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source parseParallel(Nodes counter) {
+        counter.nodes += nodes;
+        return new ParallelParser(buffer).parseSource();
+    }
+
+    //method bodies are left unparsed, so there are no nodes to count beyond the fields and signatures
+    @Benchmark
+    public Ast.Source parseLazy() {
+        return new Parser(buffer).lazyMethods().parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source lexThenParse(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(new Lexer(source).lex()).parseSource();
+    }
+
+    @Benchmark
+    public Ast.Source lexFused(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(new Lexer(source)).parseSource();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,334 @@
+package plc.project.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic programs of a configurable size and shape, which the
+ * {@code Lexer}, {@code Parser} and {@code Analyzer} all accept. The output
+ * only depends on the seed and the shape, so a corpus can be reproduced on any
+ * machine.
+ *
+ * Programs stay within what the analyzer supports: methods take no
+ * parameters and are only called after they are defined, groups only wrap
+ * binary expressions, comparisons are between values of the same type, and
+ * {@code FOR} loops are left out. Loop conditions are not guaranteed to
+ * terminate, so the programs are meant to be analyzed but not run.
+ */
+public final class ProgramGenerator {
+
+    private static final String[] TYPES = {"Integer", "Decimal", "String", "Character", "Boolean"};
+    private static final String[] COMPARABLE = {"Integer", "Decimal", "String", "Character"};
+    private static final String[] COMPARISONS = {"<", "<=", ">", ">=", "==", "!="};
+    private static final String[] ARITHMETIC = {"+", "-", "*", "/"};
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "total", "count", "value", "name"};
+    private static final String[] ESCAPES = {"\\n", "\\t", "\\\"", "\\\\", "\\'"};
+
+    //precedence of each level of the grammar, with 0 for contexts that never need parentheses
+    private static final int LOGICAL = 1;
+    private static final int EQUALITY = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    private final long seed;
+    private int fields = 20;
+    private int methods = 10;
+    private int statements = 8;
+    private int depth = 2;
+    private int expressionDepth = 3;
+    private int[] literals = {4, 2, 1, 1, 1};
+
+    private Random random;
+    private StringBuilder out;
+    private int indent;
+    private int names;
+    private List<Variable> variables;
+    private List<Variable> functions;
+
+    public ProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of global {@code LET} fields.
+     */
+    public ProgramGenerator fields(int fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    /**
+     * Sets the number of {@code DEF} methods, not counting {@code main}.
+     */
+    public ProgramGenerator methods(int methods) {
+        this.methods = methods;
+        return this;
+    }
+
+    /**
+     * Sets the number of statements in a method body. Nested blocks have half
+     * as many as the block around them.
+     */
+    public ProgramGenerator statements(int statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    /**
+     * Sets how deep {@code IF} and {@code WHILE} statements may nest.
+     */
+    public ProgramGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * Sets how deep binary expressions may nest.
+     */
+    public ProgramGenerator expressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+        return this;
+    }
+
+    /**
+     * Sets the relative weights of integer, decimal, string, character and
+     * boolean values, which decide the types of fields, locals and
+     * expressions.
+     */
+    public ProgramGenerator literals(int integers, int decimals, int strings, int characters, int booleans) {
+        if (integers < 0 || decimals < 0 || strings < 0 || characters < 0 || booleans < 0 || integers + decimals + strings + characters + booleans == 0) {
+            throw new IllegalArgumentException("Literal weights must be non-negative and not all zero.");
+        }
+        this.literals = new int[] {integers, decimals, strings, characters, booleans};
+        return this;
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        out = new StringBuilder();
+        indent = 0;
+        names = 0;
+        variables = new ArrayList<>();
+        functions = new ArrayList<>();
+        for (int i = 0; i < fields; i++) {
+            String type = type();
+            String name = "f" + names++;
+            line("LET " + name + ": " + type + " = " + expression(type, expressionDepth, 0) + ";");
+            variables.add(new Variable(name, type));
+        }
+        for (int i = 0; i < methods; i++) {
+            String type = random.nextInt(4) == 0 ? null : type();
+            method("m" + names++, type);
+        }
+        method("main", "Integer");
+        return out.toString();
+    }
+
+    private void method(String name, String type) {
+        line("DEF " + name + "()" + (type != null ? ": " + type : "") + " DO");
+        int scope = variables.size();
+        indent++;
+        block(statements, depth);
+        if (type != null) {
+            line("RETURN " + expression(type, expressionDepth, 0) + ";");
+        }
+        indent--;
+        line("END");
+        truncate(scope);
+        functions.add(new Variable(name, type));
+    }
+
+    private void block(int count, int depth) {
+        int scope = variables.size();
+        for (int i = 0; i < Math.max(count, 1); i++) {
+            statement(count, depth);
+        }
+        truncate(scope);
+    }
+
+    private void statement(int count, int depth) {
+        int kind = random.nextInt(depth > 0 ? 6 : 4);
+        if (kind == 0 || variables.isEmpty()) {
+            String type = type();
+            String name = "v" + names++;
+            line("LET " + name + ": " + type + " = " + expression(type, expressionDepth, 0) + ";");
+            variables.add(new Variable(name, type));
+        } else if (kind == 1) {
+            Variable variable = variables.get(random.nextInt(variables.size()));
+            line(variable.name + " = " + expression(variable.type, expressionDepth, 0) + ";");
+        } else if (kind == 2) {
+            line("print(" + expression(type(), expressionDepth, 0) + ");");
+        } else if (kind == 3) {
+            if (functions.isEmpty()) {
+                line("print(" + literal(type()) + ");");
+            } else {
+                line(functions.get(random.nextInt(functions.size())).name + "();");
+            }
+        } else if (kind == 4) {
+            line("IF " + expression("Boolean", expressionDepth, 0) + " DO");
+            indent++;
+            block(count / 2, depth - 1);
+            indent--;
+            if (random.nextBoolean()) {
+                line("ELSE");
+                indent++;
+                block(count / 2, depth - 1);
+                indent--;
+            }
+            line("END");
+        } else {
+            line("WHILE " + expression("Boolean", expressionDepth, 0) + " DO");
+            indent++;
+            block(count / 2, depth - 1);
+            indent--;
+            line("END");
+        }
+    }
+
+    /**
+     * Returns an expression of the given type, parenthesized if it binds more
+     * loosely than the context it is used in.
+     */
+    private String expression(String type, int depth, int context) {
+        if (depth == 0 || random.nextInt(3) == 0 || type.equals("Character")) {
+            return leaf(type);
+        }
+        String text;
+        int precedence;
+        if (type.equals("Integer") || type.equals("Decimal")) {
+            String operator = ARITHMETIC[random.nextInt(ARITHMETIC.length)];
+            precedence = operator.equals("*") || operator.equals("/") ? MULTIPLICATIVE : ADDITIVE;
+            text = binary(type, type, operator, precedence, depth);
+        } else if (type.equals("String")) {
+            precedence = ADDITIVE;
+            text = binary("String", type(), "+", precedence, depth);
+        } else if (random.nextBoolean()) {
+            String operand = COMPARABLE[random.nextInt(COMPARABLE.length)];
+            precedence = EQUALITY;
+            text = binary(operand, operand, COMPARISONS[random.nextInt(COMPARISONS.length)], precedence, depth);
+        } else {
+            precedence = LOGICAL;
+            text = binary("Boolean", "Boolean", random.nextBoolean() ? "AND" : "OR", precedence, depth);
+        }
+        return precedence < context ? "(" + text + ")" : text;
+    }
+
+    //operators associate to the left, so a left operand may bind the same while a right one must bind tighter
+    private String binary(String left, String right, String operator, int precedence, int depth) {
+        int leftContext = precedence == EQUALITY ? EQUALITY + 1 : precedence;
+        int rightContext = precedence + 1;
+        return expression(left, depth - 1, leftContext) + " " + operator + " " + expression(right, depth - 1, rightContext);
+    }
+
+    private String leaf(String type) {
+        int choice = random.nextInt(10);
+        if (choice < 4) {
+            List<Variable> candidates = ofType(variables, type);
+            if (!candidates.isEmpty()) {
+                return candidates.get(random.nextInt(candidates.size())).name;
+            }
+        } else if (choice == 4) {
+            List<Variable> candidates = ofType(functions, type);
+            if (!candidates.isEmpty()) {
+                return candidates.get(random.nextInt(candidates.size())).name + "()";
+            }
+        }
+        return literal(type);
+    }
+
+    private String literal(String type) {
+        switch (type) {
+            case "Integer":
+                return Integer.toString(random.nextInt(10000));
+            case "Decimal":
+                return (1 + random.nextInt(1000)) + "." + random.nextInt(100);
+            case "String":
+                StringBuilder text = new StringBuilder("\"").append(WORDS[random.nextInt(WORDS.length)]);
+                if (random.nextInt(4) == 0) {
+                    text.append(ESCAPES[random.nextInt(ESCAPES.length)]);
+                }
+                return text.append('"').toString();
+            case "Character":
+                return random.nextInt(8) == 0 ? "'\\n'" : "'" + (char) ('a' + random.nextInt(26)) + "'";
+            case "Boolean":
+                return random.nextBoolean() ? "TRUE" : "FALSE";
+            default:
+                throw new AssertionError("Invalid type: " + type);
+        }
+    }
+
+    //picks a type according to the literal weights
+    private String type() {
+        int total = 0;
+        for (int weight : literals) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < literals.length; i++) {
+            pick -= literals[i];
+            if (pick < 0) {
+                return TYPES[i];
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private static List<Variable> ofType(List<Variable> candidates, String type) {
+        List<Variable> matching = new ArrayList<>();
+        for (Variable candidate : candidates) {
+            if (type.equals(candidate.type)) {
+                matching.add(candidate);
+            }
+        }
+        return matching;
+    }
+
+    private void truncate(int size) {
+        while (variables.size() > size) {
+            variables.remove(variables.size() - 1);
+        }
+    }
+
+    private void line(String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+
+    /**
+     * Prints a program to standard output, given a seed and optionally the
+     * number of fields, methods and statements per method.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ProgramGenerator <seed> [fields] [methods] [statements]");
+            System.exit(1);
+        }
+        ProgramGenerator generator = new ProgramGenerator(Long.parseLong(args[0]));
+        if (args.length > 1) {
+            generator.fields(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            generator.methods(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.statements(Integer.parseInt(args[3]));
+        }
+        System.out.print(generator.generate());
+    }
+
+    private static final class Variable {
+
+        private final String name;
+        private final String type;
+
+        private Variable(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+    }
+
+}
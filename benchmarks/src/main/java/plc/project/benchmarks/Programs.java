@@ -0,0 +1,63 @@
+package plc.project.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The representative programs the benchmarks run on, stored as resources
+ * under {@code programs/}.
+ *
+ * <ul>
+ *     <li>{@code loops}: a counting loop with a nested branch.</li>
+ *     <li>{@code arithmetic}: typed fields and integer/decimal arithmetic.</li>
+ *     <li>{@code mixed}: every kind of token and statement, including escapes,
+ *     receivers and {@code FOR}; it is only lexed and parsed, since it uses
+ *     names the analyzer does not know about.</li>
+ *     <li>{@code generated}: a larger program from {@link ProgramGenerator}
+ *     with its default shape and a fixed seed.</li>
+ * </ul>
+ */
+public final class Programs {
+
+    //seed of the generated program, fixed so every machine benchmarks the same input
+    private static final long SEED = 4020;
+
+    private Programs() {}
+
+    public static String load(String name) {
+        if (name.equals("generated")) {
+            return new ProgramGenerator(SEED).generate();
+        }
+        try (InputStream input = Programs.class.getResourceAsStream("/programs/" + name + ".plc")) {
+            if (input == null) {
+                throw new IllegalArgumentException("Unknown program " + name + ".");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the program repeated the given number of times, for lexing and
+     * parsing larger inputs. The copies redefine the same names, so the result
+     * can not be analyzed.
+     */
+    public static String scaled(String name, int copies) {
+        String program = load(name);
+        StringBuilder builder = new StringBuilder(program.length() * copies);
+        for (int i = 0; i < copies; i++) {
+            builder.append(program).append('\n');
+        }
+        return builder.toString();
+    }
+
+}
@@ -196,8 +196,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
     public Void visit(Ast.Stmt.Return ast) {
         if (!method.getReturnTypeName().isPresent())
             throw new RuntimeException();
-        else
-            requireAssignable(Environment.getType(method.getReturnTypeName().get()), ast.getValue().getType());
+        visit(ast.getValue());
+        requireAssignable(Environment.getType(method.getReturnTypeName().get()), ast.getValue().getType());
 
         return null;
     }
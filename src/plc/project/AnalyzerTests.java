@@ -6,8 +6,13 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -58,6 +63,15 @@ public final class AnalyzerTests {
                                 )), ast -> ast.setFunction(new Environment.Function("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL))))
                         )), ast -> ast.setFunction(new Environment.Function("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL)))
                 ),
+                Arguments.of("Return",
+                        // DEF main(): Integer DO RETURN 1; END
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+                        )),
+                        init(new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                                new Ast.Stmt.Return(init(new Ast.Expr.Literal(BigInteger.ONE), ast -> ast.setType(Environment.Type.INTEGER)))
+                        )), ast -> ast.setFunction(new Environment.Function("main", "main", Arrays.asList(), Environment.Type.INTEGER, args -> Environment.NIL)))
+                ),
                 Arguments.of("Return Type Mismatch",
                         // DEF increment(num: Integer): Decimal DO RETURN num + 1; END
                         new Ast.Method("increment", Arrays.asList("num"), Arrays.asList("Integer"), Optional.of("Decimal"), Arrays.asList(
@@ -390,6 +404,55 @@ public final class AnalyzerTests {
         );
     }
 
+    @Test
+    public void testSerializer() throws IOException {
+        String input = "LET x: Integer = 1;\n"
+                + "LET s: String = \"text\";\n"
+                + "DEF twice(): Integer DO RETURN x * 2; END\n"
+                + "DEF main(): Integer DO\n"
+                + "    LET y: Decimal = 2.5;\n"
+                + "    LET c = 'c';\n"
+                + "    IF x < 10 AND TRUE DO x = twice(); ELSE print(s); END\n"
+                + "    WHILE x != 0 DO x = x - 1; END\n"
+                + "    print((y + 1.0));\n"
+                + "    RETURN x;\n"
+                + "END";
+        Ast.Source parsed = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(parsed, AstSerializer.decode(AstSerializer.encode(parsed)));
+
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source decoded = AstSerializer.decode(AstSerializer.encode(ast));
+        Assertions.assertEquals(ast, decoded);
+        Ast.Stmt.Return ret = (Ast.Stmt.Return) decoded.getMethods().get(1).getStatements().get(5);
+        Assertions.assertSame(decoded.getFields().get(0).getVariable(), ((Ast.Expr.Access) ret.getValue()).getVariable());
+        Assertions.assertSame(Environment.Type.INTEGER, ret.getValue().getType());
+
+        Path path = Files.createTempFile("program", ".plca");
+        try {
+            AstSerializer.write(ast, path);
+            Assertions.assertEquals(ast, AstSerializer.read(path));
+        } finally {
+            Files.delete(path);
+        }
+
+        //the node tags are part of the format, so they must not follow changes to the Ast kinds
+        ByteBuffer small = AstSerializer.encode(new Parser(new Lexer("LET x = 1; DEF f() DO WHILE x DO RETURN x; END END").lex()).parseSource());
+        byte[] encoded = new byte[small.remaining()];
+        small.get(encoded);
+        Assertions.assertArrayEquals(new byte[] {
+                'P', 'L', 'C', 'A', 0, 0, 0, 1, 4, 2, 'x', 4, 'A', 'n', 'y', 2, 'f', 1, 1,
+                0, 2, 1, 1, 2, 0, 11, 0, 4, 2, 1,
+                2, 2, 3, 1, 1, 0, 0, 2, 8, 14, 1, 0, -1, 2, 9, 14, 1, 0, -1
+        }, encoded);
+
+        ByteBuffer bytes = AstSerializer.encode(ast);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AstSerializer.decode((ByteBuffer) bytes.duplicate().limit(bytes.limit() / 2)));
+        bytes.putInt(4, AstSerializer.VERSION + 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AstSerializer.decode(bytes));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AstSerializer.decode(ByteBuffer.wrap("LET x = 1;".getBytes(StandardCharsets.UTF_8))));
+    }
+
     /**
      * Helper function for tests. If {@param expected} is {@code null}, analysis
      * is expected to throw a {@link RuntimeException}.
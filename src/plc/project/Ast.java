@@ -11,12 +11,44 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    public static final int SOURCE = 0;
+    public static final int FIELD = 1;
+    public static final int METHOD = 2;
+    public static final int EXPRESSION = 3;
+    public static final int DECLARATION = 4;
+    public static final int ASSIGNMENT = 5;
+    public static final int IF = 6;
+    public static final int FOR = 7;
+    public static final int WHILE = 8;
+    public static final int RETURN = 9;
+    public static final int ERROR = 10;
+    public static final int LITERAL = 11;
+    public static final int GROUP = 12;
+    public static final int BINARY = 13;
+    public static final int ACCESS = 14;
+    public static final int FUNCTION = 15;
+
+    private final int kind;
+
+    private Ast(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Returns the kind of the node, one of the constants above, which {@link
+     * Visitor#visit(Ast)} switches on instead of testing each class in turn.
+     */
+    public final int getKind() {
+        return kind;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Field> fields;
         private final List<Method> methods;
 
         public Source(List<Field> fields, List<Method> methods) {
+            super(SOURCE);
             this.fields = fields;
             this.methods = methods;
         }
@@ -58,6 +90,7 @@ public abstract class Ast {
         }
 
         public Field(String name, String typeName, Optional<Expr> value) {
+            super(FIELD);
             this.name = name;
             this.typeName = typeName;
             this.value = value;
@@ -82,6 +115,10 @@ public abstract class Ast {
             return variable;
         }
 
+        public boolean hasVariable() {
+            return variable != null;
+        }
+
         public void setVariable(Environment.Variable variable) {
             this.variable = variable;
         }
@@ -124,6 +161,7 @@ public abstract class Ast {
         }
 
         public Method(String name, List<String> parameters, List<String> parameterTypeNames, Optional<String> returnTypeName, List<Stmt> statements) {
+            super(METHOD);
             this.name = name;
             this.parameters = parameters;
             this.parameterTypeNames = parameterTypeNames;
@@ -158,6 +196,10 @@ public abstract class Ast {
             return function;
         }
 
+        public boolean hasFunction() {
+            return function != null;
+        }
+
         public void setFunction(Environment.Function function) {
             this.function = function;
         }
@@ -189,11 +231,16 @@ public abstract class Ast {
 
     public static abstract class Stmt extends Ast {
 
+        private Stmt(int kind) {
+            super(kind);
+        }
+
         public static final class Expression extends Stmt {
 
             private final Expr expression;
 
             public Expression(Expr expression) {
+                super(EXPRESSION);
                 this.expression = expression;
             }
 
@@ -228,6 +275,7 @@ public abstract class Ast {
             }
 
             public Declaration(String name, Optional<String> typeName, Optional<Expr> value) {
+                super(DECLARATION);
                 this.name = name;
                 this.typeName = typeName;
                 this.value = value;
@@ -252,6 +300,10 @@ public abstract class Ast {
                 return variable;
             }
 
+            public boolean hasVariable() {
+                return variable != null;
+            }
+
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
@@ -283,6 +335,7 @@ public abstract class Ast {
             private final Expr value;
 
             public Assignment(Expr receiver, Expr value) {
+                super(ASSIGNMENT);
                 this.receiver = receiver;
                 this.value = value;
             }
@@ -320,6 +373,7 @@ public abstract class Ast {
 
 
             public If(Expr condition, List<Stmt> thenStatements, List<Stmt> elseStatements) {
+                super(IF);
                 this.condition = condition;
                 this.thenStatements = thenStatements;
                 this.elseStatements = elseStatements;
@@ -363,6 +417,7 @@ public abstract class Ast {
             private final List<Stmt> statements;
 
             public For(String name, Expr value, List<Stmt> statements) {
+                super(FOR);
                 this.name = name;
                 this.value = value;
                 this.statements = statements;
@@ -405,6 +460,7 @@ public abstract class Ast {
             private final List<Stmt> statements;
 
             public While(Expr condition, List<Stmt> statements) {
+                super(WHILE);
                 this.condition = condition;
                 this.statements = statements;
             }
@@ -439,6 +495,7 @@ public abstract class Ast {
             private final Expr value;
 
             public Return(Expr value) {
+                super(RETURN);
                 this.value = value;
             }
 
@@ -461,10 +518,59 @@ public abstract class Ast {
 
         }
 
+        /**
+         * Stands in for a statement that failed to parse, when the parser is
+         * recording errors instead of throwing them.
+         */
+        public static final class Error extends Stmt {
+
+            private final String message;
+            private final int index;
+
+            public Error(String message, int index) {
+                super(ERROR);
+                this.message = message;
+                this.index = index;
+            }
+
+            public String getMessage() {
+                return message;
+            }
+
+            public int getIndex() {
+                return index;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Error &&
+                        message.equals(((Error) obj).message) &&
+                        index == ((Error) obj).index;
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(message, index);
+            }
+
+            @Override
+            public String toString() {
+                return "Ast.Stmt.Error{" +
+                        "message='" + message + '\'' +
+                        ", index=" + index +
+                        '}';
+            }
+
+        }
+
     }
 
     public static abstract class Expr extends Ast {
 
+        private Expr(int kind) {
+            super(kind);
+        }
+
         public abstract Environment.Type getType();
 
         public static final class Literal extends Expr {
@@ -473,6 +579,7 @@ public abstract class Ast {
             private Environment.Type type = null;
 
             public Literal(Object literal) {
+                super(LITERAL);
                 this.literal = literal;
             }
 
@@ -488,6 +595,10 @@ public abstract class Ast {
                 return type;
             }
 
+            public boolean hasType() {
+                return type != null;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
@@ -515,6 +626,7 @@ public abstract class Ast {
             private Environment.Type type = null;
 
             public Group(Expr expression) {
+                super(GROUP);
                 this.expression = expression;
             }
 
@@ -530,6 +642,10 @@ public abstract class Ast {
                 return type;
             }
 
+            public boolean hasType() {
+                return type != null;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
@@ -558,6 +674,7 @@ public abstract class Ast {
             private Environment.Type type = null;
 
             public Binary(String operator, Expr left, Expr right) {
+                super(BINARY);
                 this.operator = operator;
                 this.left = left;
                 this.right = right;
@@ -583,6 +700,10 @@ public abstract class Ast {
                 return type;
             }
 
+            public boolean hasType() {
+                return type != null;
+            }
+
             public void setType(Environment.Type type) {
                 this.type = type;
             }
@@ -615,6 +736,7 @@ public abstract class Ast {
             private Environment.Variable variable = null;
 
             public Access(Optional<Expr> receiver, String name) {
+                super(ACCESS);
                 this.receiver = receiver;
                 this.name = name;
             }
@@ -634,6 +756,10 @@ public abstract class Ast {
                 return variable;
             }
 
+            public boolean hasVariable() {
+                return variable != null;
+            }
+
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
@@ -670,6 +796,7 @@ public abstract class Ast {
             private Environment.Function function = null;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
+                super(FUNCTION);
                 this.receiver = receiver;
                 this.name = name;
                 this.arguments = arguments;
@@ -694,6 +821,10 @@ public abstract class Ast {
                 return function;
             }
 
+            public boolean hasFunction() {
+                return function != null;
+            }
+
             public void setFunction(Environment.Function function) {
                 this.function = function;
             }
@@ -729,38 +860,41 @@ public abstract class Ast {
     public interface Visitor<T> {
 
         default T visit(Ast ast) {
-            if (ast instanceof Source) {
-                return visit((Source) ast);
-            } else if (ast instanceof Field) {
-                return visit((Field) ast);
-            } else if (ast instanceof Method) {
-                return visit((Method) ast);
-            } else if (ast instanceof Stmt.Expression) {
-                return visit((Stmt.Expression) ast);
-            } else if (ast instanceof Stmt.Declaration) {
-                return visit((Stmt.Declaration) ast);
-            } else if (ast instanceof Stmt.Assignment) {
-                return visit((Stmt.Assignment) ast);
-            } else if (ast instanceof Stmt.If) {
-                return visit((Stmt.If) ast);
-            } else if (ast instanceof Stmt.For) {
-                return visit((Stmt.For) ast);
-            } else if (ast instanceof Stmt.While) {
-                return visit((Stmt.While) ast);
-            } else if (ast instanceof Stmt.Return) {
-                return visit((Stmt.Return) ast);
-            } else if (ast instanceof Expr.Literal) {
-                return visit((Expr.Literal) ast);
-            } else if (ast instanceof Expr.Group) {
-                return visit((Expr.Group) ast);
-            } else if (ast instanceof Expr.Binary) {
-                return visit((Expr.Binary) ast);
-            } else if (ast instanceof Expr.Access) {
-                return visit((Expr.Access) ast);
-            } else if (ast instanceof Expr.Function) {
-                return visit((Expr.Function) ast);
-            } else {
-                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+            switch (ast.getKind()) {
+                case SOURCE:
+                    return visit((Source) ast);
+                case FIELD:
+                    return visit((Field) ast);
+                case METHOD:
+                    return visit((Method) ast);
+                case EXPRESSION:
+                    return visit((Stmt.Expression) ast);
+                case DECLARATION:
+                    return visit((Stmt.Declaration) ast);
+                case ASSIGNMENT:
+                    return visit((Stmt.Assignment) ast);
+                case IF:
+                    return visit((Stmt.If) ast);
+                case FOR:
+                    return visit((Stmt.For) ast);
+                case WHILE:
+                    return visit((Stmt.While) ast);
+                case RETURN:
+                    return visit((Stmt.Return) ast);
+                case ERROR:
+                    return visit((Stmt.Error) ast);
+                case LITERAL:
+                    return visit((Expr.Literal) ast);
+                case GROUP:
+                    return visit((Expr.Group) ast);
+                case BINARY:
+                    return visit((Expr.Binary) ast);
+                case ACCESS:
+                    return visit((Expr.Access) ast);
+                case FUNCTION:
+                    return visit((Expr.Function) ast);
+                default:
+                    throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
             }
         }
 
@@ -784,6 +918,11 @@ public abstract class Ast {
 
         T visit(Stmt.Return ast);
 
+        //a tree with syntax errors can not be analyzed or run, so by default the recorded error is thrown
+        default T visit(Stmt.Error ast) {
+            throw new ParseException(ast.getMessage(), ast.getIndex());
+        }
+
         T visit(Expr.Literal ast);
 
         T visit(Expr.Group ast);
@@ -0,0 +1,621 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A compact encoding of ASTs, storing every node in a few shared primitive
+ * arrays instead of as objects with their own lists and optionals. Nodes are
+ * identified by an integer id. A node's kind, which is its {@link
+ * Ast#getKind()}, and the offset of its slots are stored in two tables, and
+ * its slots live in one shared data array. Names are interned into a {@link
+ * SymbolTable}, and literal values are kept in a constant pool.
+ *
+ * The slots of each kind are below. Optional children and names are -1 when
+ * absent. A list is its size followed by its items, and lists come after the
+ * fixed slots, in the order given below. Each list constant names the same
+ * list in every kind that has it, such as {@code STATEMENTS} for the bodies
+ * of methods and loops.
+ *
+ * <ul>
+ *     <li>{@code SOURCE}: the lists {@code FIELDS} and {@code METHODS}.</li>
+ *     <li>{@code FIELD}: name, type name, value.</li>
+ *     <li>{@code METHOD}: name, return type name, and the lists {@code
+ *     PARAMETERS}, {@code PARAMETER_TYPES} (both of names) and {@code
+ *     STATEMENTS}.</li>
+ *     <li>{@code EXPRESSION}, {@code RETURN}, {@code GROUP}: expression.</li>
+ *     <li>{@code DECLARATION}: name, type name, value.</li>
+ *     <li>{@code ASSIGNMENT}: receiver, value.</li>
+ *     <li>{@code IF}: condition, and the lists {@code THEN} and {@code
+ *     ELSE}.</li>
+ *     <li>{@code FOR}: name, value, and the list {@code STATEMENTS}.</li>
+ *     <li>{@code WHILE}: condition, and the list {@code STATEMENTS}.</li>
+ *     <li>{@code ERROR}: message, index.</li>
+ *     <li>{@code LITERAL}: constant.</li>
+ *     <li>{@code BINARY}: operator, left, right.</li>
+ *     <li>{@code ACCESS}: name, receiver.</li>
+ *     <li>{@code FUNCTION}: name, receiver, and the list {@code
+ *     ARGUMENTS}.</li>
+ * </ul>
+ *
+ * Children are always added before their parents. The left operands of a
+ * chain of binary expressions are encoded and decoded in a loop, so the
+ * left-nested trees the parser builds for long chains do not recurse.
+ *
+ * Once a tree is added, the objects it was built from can be dropped. A
+ * {@link Visitor} then walks the arena by node id, reading slots straight from
+ * the arrays, so a traversal allocates no nodes. Since a subtree is added all
+ * at once, its nodes and slots are each one contiguous range of the arrays.
+ *
+ * This falls short of a parser that emits nodes straight into flat arrays.
+ * An arena is only built from a tree the {@link Parser} has already created,
+ * so it does not lower the peak memory of parsing, only what is kept
+ * afterwards: about a third of the object tree per node, not an order of
+ * magnitude less. Walking it through the checked accessors is slower than
+ * walking the objects, and the {@link Analyzer} and {@link Interpreter} only
+ * run on objects, so running an arena takes {@link #toAst(int)} first.
+ */
+public final class AstArena {
+
+    public static final int SOURCE = Ast.SOURCE;
+    public static final int FIELD = Ast.FIELD;
+    public static final int METHOD = Ast.METHOD;
+    public static final int EXPRESSION = Ast.EXPRESSION;
+    public static final int DECLARATION = Ast.DECLARATION;
+    public static final int ASSIGNMENT = Ast.ASSIGNMENT;
+    public static final int IF = Ast.IF;
+    public static final int FOR = Ast.FOR;
+    public static final int WHILE = Ast.WHILE;
+    public static final int RETURN = Ast.RETURN;
+    public static final int ERROR = Ast.ERROR;
+    public static final int LITERAL = Ast.LITERAL;
+    public static final int GROUP = Ast.GROUP;
+    public static final int BINARY = Ast.BINARY;
+    public static final int ACCESS = Ast.ACCESS;
+    public static final int FUNCTION = Ast.FUNCTION;
+
+    public static final int FIELDS = 0;
+    public static final int METHODS = 1;
+    public static final int PARAMETERS = 2;
+    public static final int PARAMETER_TYPES = 3;
+    public static final int STATEMENTS = 4;
+    public static final int THEN = 5;
+    public static final int ELSE = 6;
+    public static final int ARGUMENTS = 7;
+
+    //number of fixed slots before the lists of each kind
+    private static final int[] FIXED = {0, 3, 2, 1, 3, 2, 1, 2, 1, 1, 2, 1, 1, 3, 2, 2};
+
+    //the lists of each kind, in the order they are stored after the fixed slots
+    private static final int[][] LISTS = new int[FIXED.length][0];
+
+    static {
+        LISTS[SOURCE] = new int[] {FIELDS, METHODS};
+        LISTS[METHOD] = new int[] {PARAMETERS, PARAMETER_TYPES, STATEMENTS};
+        LISTS[IF] = new int[] {THEN, ELSE};
+        LISTS[FOR] = new int[] {STATEMENTS};
+        LISTS[WHILE] = new int[] {STATEMENTS};
+        LISTS[FUNCTION] = new int[] {ARGUMENTS};
+    }
+
+    private final SymbolTable names = new SymbolTable();
+    private int[] kinds = new int[64];
+    private int[] offsets = new int[64];
+    private int size = 0;
+    private int[] data = new int[256];
+    private int length = 0;
+    private Object[] constants = new Object[16];
+    private int constantCount = 0;
+
+    /**
+     * Returns the number of nodes in the arena.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bytes taken by the arena's arrays, including their unused
+     * capacity. Literal values and the strings of names are not counted,
+     * since they are the same objects an {@link Ast} tree holds.
+     */
+    public long getByteSize() {
+        return 4L * (kinds.length + offsets.length + data.length) + 4L * constants.length;
+    }
+
+    /**
+     * Shrinks the arrays to what the nodes use, once no more trees are going
+     * to be added.
+     */
+    public void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        offsets = Arrays.copyOf(offsets, size);
+        data = Arrays.copyOf(data, length);
+        constants = Arrays.copyOf(constants, constantCount);
+    }
+
+    /**
+     * Encodes the tree into the arena, returning the id of its root.
+     */
+    public int add(Ast ast) {
+        switch (ast.getKind()) {
+            case SOURCE: {
+                Ast.Source source = (Ast.Source) ast;
+                int[] fields = addAll(source.getFields());
+                int[] methods = addAll(source.getMethods());
+                int node = node(SOURCE);
+                list(fields);
+                list(methods);
+                return node;
+            }
+            case FIELD: {
+                Ast.Field field = (Ast.Field) ast;
+                int value = add(field.getValue());
+                return node(FIELD, name(field.getName()), name(field.getTypeName()), value);
+            }
+            case METHOD: {
+                Ast.Method method = (Ast.Method) ast;
+                int[] statements = addAll(method.getStatements());
+                int node = node(METHOD, name(method.getName()), name(method.getReturnTypeName().orElse(null)));
+                list(names(method.getParameters()));
+                list(names(method.getParameterTypeNames()));
+                list(statements);
+                return node;
+            }
+            case EXPRESSION:
+                return node(EXPRESSION, add(((Ast.Stmt.Expression) ast).getExpression()));
+            case DECLARATION: {
+                Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+                int value = add(declaration.getValue());
+                return node(DECLARATION, name(declaration.getName()), name(declaration.getTypeName().orElse(null)), value);
+            }
+            case ASSIGNMENT: {
+                Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) ast;
+                int receiver = add(assignment.getReceiver());
+                return node(ASSIGNMENT, receiver, add(assignment.getValue()));
+            }
+            case IF: {
+                Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+                int condition = add(statement.getCondition());
+                int[] thens = addAll(statement.getThenStatements());
+                int[] elses = addAll(statement.getElseStatements());
+                int node = node(IF, condition);
+                list(thens);
+                list(elses);
+                return node;
+            }
+            case FOR: {
+                Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+                int value = add(statement.getValue());
+                int[] statements = addAll(statement.getStatements());
+                int node = node(FOR, name(statement.getName()), value);
+                list(statements);
+                return node;
+            }
+            case WHILE: {
+                Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+                int condition = add(statement.getCondition());
+                int[] statements = addAll(statement.getStatements());
+                int node = node(WHILE, condition);
+                list(statements);
+                return node;
+            }
+            case RETURN:
+                return node(RETURN, add(((Ast.Stmt.Return) ast).getValue()));
+            case ERROR: {
+                Ast.Stmt.Error error = (Ast.Stmt.Error) ast;
+                return node(ERROR, name(error.getMessage()), error.getIndex());
+            }
+            case LITERAL:
+                return node(LITERAL, constant(((Ast.Expr.Literal) ast).getLiteral()));
+            case GROUP:
+                return node(GROUP, add(((Ast.Expr.Group) ast).getExpression()));
+            case BINARY: {
+                List<Ast.Expr.Binary> chain = new ArrayList<>();
+                Ast.Expr expr = (Ast.Expr) ast;
+                while (expr.getKind() == BINARY) {
+                    chain.add((Ast.Expr.Binary) expr);
+                    expr = ((Ast.Expr.Binary) expr).getLeft();
+                }
+                int left = add(expr);
+                for (int i = chain.size() - 1; i >= 0; i--) {
+                    int right = add(chain.get(i).getRight());
+                    left = node(BINARY, name(chain.get(i).getOperator()), left, right);
+                }
+                return left;
+            }
+            case ACCESS: {
+                Ast.Expr.Access access = (Ast.Expr.Access) ast;
+                int receiver = add(access.getReceiver());
+                return node(ACCESS, name(access.getName()), receiver);
+            }
+            case FUNCTION: {
+                Ast.Expr.Function function = (Ast.Expr.Function) ast;
+                int receiver = add(function.getReceiver());
+                int[] arguments = addAll(function.getArguments());
+                int node = node(FUNCTION, name(function.getName()), receiver);
+                list(arguments);
+                return node;
+            }
+            default:
+                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+        }
+    }
+
+    public int getKind(int node) {
+        return kinds[check(node)];
+    }
+
+    /**
+     * Returns the name of a field, method, declaration, for loop, access or
+     * function, the operator of a binary expression, or the message of an
+     * error.
+     */
+    public String getName(int node) {
+        return name(node, 0, 1 << FIELD | 1 << METHOD | 1 << DECLARATION | 1 << FOR | 1 << BINARY | 1 << ACCESS | 1 << FUNCTION | 1 << ERROR);
+    }
+
+    /**
+     * Returns the type name of a field or declaration, or the return type name
+     * of a method, or null if it has none.
+     */
+    public String getTypeName(int node) {
+        return name(node, 1, 1 << FIELD | 1 << METHOD | 1 << DECLARATION);
+    }
+
+    /**
+     * Returns the value of a field, declaration, assignment, for loop or
+     * return, or the expression of an expression statement or group, or -1
+     * if it has none.
+     */
+    public int getValue(int node) {
+        switch (getKind(node)) {
+            case FIELD:
+            case DECLARATION:
+                return slot(node, 2);
+            case ASSIGNMENT:
+            case FOR:
+                return slot(node, 1);
+            case EXPRESSION:
+            case RETURN:
+            case GROUP:
+                return slot(node, 0);
+            default:
+                throw invalid(node);
+        }
+    }
+
+    /**
+     * Returns the receiver of an assignment, access or function, or -1 if it
+     * has none.
+     */
+    public int getReceiver(int node) {
+        switch (getKind(node)) {
+            case ASSIGNMENT:
+                return slot(node, 0);
+            case ACCESS:
+            case FUNCTION:
+                return slot(node, 1);
+            default:
+                throw invalid(node);
+        }
+    }
+
+    public int getCondition(int node) {
+        return slot(node, 0, 1 << IF | 1 << WHILE);
+    }
+
+    public int getLeft(int node) {
+        return slot(node, 1, 1 << BINARY);
+    }
+
+    public int getRight(int node) {
+        return slot(node, 2, 1 << BINARY);
+    }
+
+    public Object getLiteral(int node) {
+        return constants[slot(node, 0, 1 << LITERAL)];
+    }
+
+    /**
+     * Returns the source index of an error.
+     */
+    public int getIndex(int node) {
+        return slot(node, 1, 1 << ERROR);
+    }
+
+    /**
+     * Returns the size of one of the node's lists, such as the {@code
+     * STATEMENTS} of a method.
+     */
+    public int getListSize(int node, int list) {
+        return data[list(node, list)];
+    }
+
+    /**
+     * Returns an item of one of the node's lists, which is a node id for
+     * every list except the parameter names and types of a method.
+     */
+    public int getListItem(int node, int list, int i) {
+        int start = list(node, list);
+        if (i < 0 || i >= data[start]) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + data[start]);
+        }
+        return data[start + 1 + i];
+    }
+
+    /**
+     * Returns the string an interned name id, such as a parameter name,
+     * stands for.
+     */
+    public String getString(int name) {
+        return names.getName(name);
+    }
+
+    /**
+     * Decodes the node back into a tree of {@link Ast} objects.
+     */
+    public Ast toAst(int node) {
+        switch (getKind(node)) {
+            case SOURCE:
+                return new Ast.Source(this.<Ast.Field>toList(node, FIELDS), this.<Ast.Method>toList(node, METHODS));
+            case FIELD:
+                return new Ast.Field(getName(node), getTypeName(node), toOptional(getValue(node)));
+            case METHOD:
+                return new Ast.Method(getName(node), toNames(node, PARAMETERS), toNames(node, PARAMETER_TYPES),
+                        Optional.ofNullable(getTypeName(node)), this.<Ast.Stmt>toList(node, STATEMENTS));
+            case EXPRESSION:
+                return new Ast.Stmt.Expression((Ast.Expr) toAst(getValue(node)));
+            case DECLARATION:
+                return new Ast.Stmt.Declaration(getName(node), Optional.ofNullable(getTypeName(node)), toOptional(getValue(node)));
+            case ASSIGNMENT:
+                return new Ast.Stmt.Assignment((Ast.Expr) toAst(getReceiver(node)), (Ast.Expr) toAst(getValue(node)));
+            case IF:
+                return new Ast.Stmt.If((Ast.Expr) toAst(getCondition(node)), this.<Ast.Stmt>toList(node, THEN), this.<Ast.Stmt>toList(node, ELSE));
+            case FOR:
+                return new Ast.Stmt.For(getName(node), (Ast.Expr) toAst(getValue(node)), this.<Ast.Stmt>toList(node, STATEMENTS));
+            case WHILE:
+                return new Ast.Stmt.While((Ast.Expr) toAst(getCondition(node)), this.<Ast.Stmt>toList(node, STATEMENTS));
+            case RETURN:
+                return new Ast.Stmt.Return((Ast.Expr) toAst(getValue(node)));
+            case ERROR:
+                return new Ast.Stmt.Error(getName(node), getIndex(node));
+            case LITERAL:
+                return new Ast.Expr.Literal(getLiteral(node));
+            case GROUP:
+                return new Ast.Expr.Group((Ast.Expr) toAst(getValue(node)));
+            case BINARY:
+                int[] chain = new int[8];
+                int count = 0;
+                int left = node;
+                while (kinds[left] == BINARY) {
+                    if (count == chain.length) {
+                        chain = Arrays.copyOf(chain, count * 2);
+                    }
+                    chain[count++] = left;
+                    left = getLeft(left);
+                }
+                Ast.Expr expr = (Ast.Expr) toAst(left);
+                while (count > 0) {
+                    int binary = chain[--count];
+                    expr = new Ast.Expr.Binary(getName(binary), expr, (Ast.Expr) toAst(getRight(binary)));
+                }
+                return expr;
+            case ACCESS:
+                return new Ast.Expr.Access(toOptional(getReceiver(node)), getName(node));
+            case FUNCTION:
+                return new Ast.Expr.Function(toOptional(getReceiver(node)), getName(node), this.<Ast.Expr>toList(node, ARGUMENTS));
+            default:
+                throw new AssertionError("Invalid kind: " + kinds[node]);
+        }
+    }
+
+    /**
+     * Visits the node by calling the visitor's method for its kind, without
+     * creating any {@link Ast} objects.
+     */
+    public <T> T visit(int node, Visitor<T> visitor) {
+        switch (getKind(node)) {
+            case SOURCE:
+                return visitor.visitSource(node);
+            case FIELD:
+                return visitor.visitField(node);
+            case METHOD:
+                return visitor.visitMethod(node);
+            case EXPRESSION:
+                return visitor.visitExpression(node);
+            case DECLARATION:
+                return visitor.visitDeclaration(node);
+            case ASSIGNMENT:
+                return visitor.visitAssignment(node);
+            case IF:
+                return visitor.visitIf(node);
+            case FOR:
+                return visitor.visitFor(node);
+            case WHILE:
+                return visitor.visitWhile(node);
+            case RETURN:
+                return visitor.visitReturn(node);
+            case ERROR:
+                return visitor.visitError(node);
+            case LITERAL:
+                return visitor.visitLiteral(node);
+            case GROUP:
+                return visitor.visitGroup(node);
+            case BINARY:
+                return visitor.visitBinary(node);
+            case ACCESS:
+                return visitor.visitAccess(node);
+            case FUNCTION:
+                return visitor.visitFunction(node);
+            default:
+                throw new AssertionError("Invalid kind: " + kinds[node]);
+        }
+    }
+
+    private int add(Optional<? extends Ast> ast) {
+        return ast.isPresent() ? add(ast.get()) : -1;
+    }
+
+    private int[] addAll(List<? extends Ast> asts) {
+        int[] nodes = new int[asts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = add(asts.get(i));
+        }
+        return nodes;
+    }
+
+    //starts a node and appends its fixed slots, after which its lists are appended with list
+    private int node(int kind, int... slots) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        kinds[size] = kind;
+        offsets[size] = length;
+        append(slots);
+        return size++;
+    }
+
+    private void list(int[] items) {
+        append(new int[] {items.length});
+        append(items);
+    }
+
+    private void append(int[] slots) {
+        while (length + slots.length > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        System.arraycopy(slots, 0, data, length, slots.length);
+        length += slots.length;
+    }
+
+    private int name(String name) {
+        return name == null ? -1 : names.intern(name, 0, name.length());
+    }
+
+    private int[] names(List<String> strings) {
+        int[] ids = new int[strings.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = name(strings.get(i));
+        }
+        return ids;
+    }
+
+    private int constant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+
+    private int check(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Node " + node + " out of bounds for " + size + " nodes");
+        }
+        return node;
+    }
+
+    private int slot(int node, int slot) {
+        return data[offsets[node] + slot];
+    }
+
+    //returns a fixed slot of a node, whose kind must be in the mask of 1 << kind bits
+    private int slot(int node, int slot, int kinds) {
+        if ((kinds & 1 << getKind(node)) == 0) {
+            throw invalid(node);
+        }
+        return slot(node, slot);
+    }
+
+    private String name(int node, int slot, int kinds) {
+        int name = slot(node, slot, kinds);
+        return name < 0 ? null : names.getName(name);
+    }
+
+    //returns the offset of the size of one of the node's lists, skipping the lists stored before it
+    private int list(int node, int list) {
+        int kind = getKind(node);
+        int start = offsets[node] + FIXED[kind];
+        for (int stored : LISTS[kind]) {
+            if (stored == list) {
+                return start;
+            }
+            start += 1 + data[start];
+        }
+        throw new IllegalArgumentException("A node of kind " + kind + " has no list " + list + ".");
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> List<T> toList(int node, int list) {
+        int size = getListSize(node, list);
+        List<T> asts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            asts.add((T) toAst(getListItem(node, list, i)));
+        }
+        return asts;
+    }
+
+    private List<String> toNames(int node, int list) {
+        int size = getListSize(node, list);
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(names.getName(getListItem(node, list, i)));
+        }
+        return strings;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> Optional<T> toOptional(int node) {
+        return node < 0 ? Optional.empty() : Optional.of((T) toAst(node));
+    }
+
+    private IllegalArgumentException invalid(int node) {
+        return new IllegalArgumentException("Node " + node + " of kind " + kinds[node] + " has no such slot.");
+    }
+
+    /**
+     * A visitor over the nodes of an arena, called by {@link #visit(int,
+     * Visitor)} with the id of a node of the method's kind. Implementations
+     * keep a reference to the arena to read the node's slots and lists.
+     */
+    public interface Visitor<T> {
+
+        T visitSource(int node);
+
+        T visitField(int node);
+
+        T visitMethod(int node);
+
+        T visitExpression(int node);
+
+        T visitDeclaration(int node);
+
+        T visitAssignment(int node);
+
+        T visitIf(int node);
+
+        T visitFor(int node);
+
+        T visitWhile(int node);
+
+        T visitReturn(int node);
+
+        T visitError(int node);
+
+        T visitLiteral(int node);
+
+        T visitGroup(int node);
+
+        T visitBinary(int node);
+
+        T visitAccess(int node);
+
+        T visitFunction(int node);
+
+    }
+
+}
@@ -0,0 +1,664 @@
+package plc.project;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A versioned binary format for sources, including the types, variables and
+ * functions the {@link Analyzer} attaches to them, so a program can be loaded
+ * without lexing, parsing and analyzing it again.
+ *
+ * The format is a header (magic and version), a table of the strings used for
+ * names, a table of the variables and one of the functions referenced by the
+ * tree, and then the tree itself in pre-order. Each node starts with a tag
+ * the format fixes for its class, rather than its {@link Ast#getKind()}, so
+ * the kinds can change without changing the format. Integers are unsigned
+ * varints of the value plus one, so -1 marks a missing name or annotation in
+ * a single byte. A variable or function shared by several nodes is written
+ * once, and the nodes share it again once read.
+ *
+ * Types are written by name and read back with {@link Environment#getType},
+ * so they must be registered when the program is loaded. Variables are read
+ * with the value {@link Environment#NIL}, and functions return it, as the
+ * ones the analyzer defines do. Annotations that were never set, such as on a
+ * tree that was only parsed, stay unset.
+ */
+public final class AstSerializer {
+
+    public static final int VERSION = 1;
+
+    //"PLCA" in ASCII
+    private static final int MAGIC = 0x504C4341;
+
+    //node tags, which are part of the format, so a change to the Ast kinds must not change them
+    private static final int SOURCE = 0;
+    private static final int FIELD = 1;
+    private static final int METHOD = 2;
+    private static final int EXPRESSION = 3;
+    private static final int DECLARATION = 4;
+    private static final int ASSIGNMENT = 5;
+    private static final int IF = 6;
+    private static final int FOR = 7;
+    private static final int WHILE = 8;
+    private static final int RETURN = 9;
+    private static final int ERROR = 10;
+    private static final int LITERAL = 11;
+    private static final int GROUP = 12;
+    private static final int BINARY = 13;
+    private static final int ACCESS = 14;
+    private static final int FUNCTION = 15;
+
+    //literal tags
+    private static final int NIL = 0;
+    private static final int BOOLEAN = 1;
+    private static final int CHARACTER = 2;
+    private static final int STRING = 3;
+    private static final int INTEGER = 4;
+    private static final int DECIMAL = 5;
+
+    private AstSerializer() {}
+
+    /**
+     * Encodes the source into a buffer, which is ready to be read from.
+     */
+    public static ByteBuffer encode(Ast.Source source) {
+        Writer writer = new Writer();
+        writer.node(source);
+        Output tree = writer.out;
+        Output out = new Output(tree.buffer.position() + 64);
+        out.buffer.putInt(MAGIC);
+        out.buffer.putInt(VERSION);
+        out.putInt(writer.strings.size());
+        for (String string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        out.putInt(writer.variables.size());
+        for (Environment.Variable variable : writer.variables) {
+            out.putInt(writer.string(variable.getName()));
+            out.putInt(writer.string(variable.getJvmName()));
+            out.putInt(writer.string(variable.getType().getName()));
+        }
+        out.putInt(writer.functions.size());
+        for (Environment.Function function : writer.functions) {
+            out.putInt(writer.string(function.getName()));
+            out.putInt(writer.string(function.getJvmName()));
+            out.putInt(function.getParameterTypes().size());
+            for (Environment.Type type : function.getParameterTypes()) {
+                out.putInt(writer.string(type.getName()));
+            }
+            out.putInt(writer.string(function.getReturnType().getName()));
+        }
+        tree.buffer.flip();
+        out.put(tree.buffer);
+        out.buffer.flip();
+        return out.buffer;
+    }
+
+    /**
+     * Decodes a source from the remaining bytes of the buffer, throwing an
+     * {@link IllegalArgumentException} if they are not a source in this
+     * version of the format.
+     */
+    public static Ast.Source decode(ByteBuffer bytes) {
+        try {
+            return new Reader(bytes.slice()).source();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Malformed compiled program.", e);
+        }
+    }
+
+    public static void write(Ast.Source source, Path path) throws IOException {
+        ByteBuffer bytes = encode(source);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    public static Ast.Source read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * A buffer that grows as it is written to.
+     */
+    private static final class Output {
+
+        private ByteBuffer buffer;
+
+        private Output(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        private void putInt(int value) {
+            ensure(5);
+            int bits = value + 1;
+            while ((bits & ~0x7F) != 0) {
+                buffer.put((byte) ((bits & 0x7F) | 0x80));
+                bits >>>= 7;
+            }
+            buffer.put((byte) bits);
+        }
+
+        private void put(byte[] bytes) {
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void put(ByteBuffer bytes) {
+            ensure(bytes.remaining());
+            buffer.put(bytes);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+
+    }
+
+    /**
+     * Writes the tree, collecting the strings, variables and functions it
+     * references for the tables written before it. The strings of a variable
+     * or function are collected when it is, since its table is written after
+     * the string table.
+     */
+    private static final class Writer {
+
+        private final Output out = new Output(256);
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<Environment.Variable> variables = new ArrayList<>();
+        private final Map<Environment.Variable, Integer> variableIds = new IdentityHashMap<>();
+        private final List<Environment.Function> functions = new ArrayList<>();
+        private final Map<Environment.Function, Integer> functionIds = new IdentityHashMap<>();
+
+        private void node(Ast ast) {
+            switch (ast.getKind()) {
+                case Ast.SOURCE: {
+                    Ast.Source source = (Ast.Source) ast;
+                    tag(SOURCE);
+                    nodes(source.getFields());
+                    nodes(source.getMethods());
+                    break;
+                }
+                case Ast.FIELD: {
+                    Ast.Field field = (Ast.Field) ast;
+                    tag(FIELD);
+                    out.putInt(string(field.getName()));
+                    out.putInt(string(field.getTypeName()));
+                    out.putInt(variable(field.hasVariable() ? field.getVariable() : null));
+                    node(field.getValue());
+                    break;
+                }
+                case Ast.METHOD: {
+                    Ast.Method method = (Ast.Method) ast;
+                    tag(METHOD);
+                    out.putInt(string(method.getName()));
+                    strings(method.getParameters());
+                    strings(method.getParameterTypeNames());
+                    out.putInt(string(method.getReturnTypeName().orElse(null)));
+                    out.putInt(function(method.hasFunction() ? method.getFunction() : null));
+                    nodes(method.getStatements());
+                    break;
+                }
+                case Ast.EXPRESSION:
+                    tag(EXPRESSION);
+                    node(((Ast.Stmt.Expression) ast).getExpression());
+                    break;
+                case Ast.DECLARATION: {
+                    Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+                    tag(DECLARATION);
+                    out.putInt(string(declaration.getName()));
+                    out.putInt(string(declaration.getTypeName().orElse(null)));
+                    out.putInt(variable(declaration.hasVariable() ? declaration.getVariable() : null));
+                    node(declaration.getValue());
+                    break;
+                }
+                case Ast.ASSIGNMENT:
+                    tag(ASSIGNMENT);
+                    node(((Ast.Stmt.Assignment) ast).getReceiver());
+                    node(((Ast.Stmt.Assignment) ast).getValue());
+                    break;
+                case Ast.IF: {
+                    Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+                    tag(IF);
+                    node(statement.getCondition());
+                    nodes(statement.getThenStatements());
+                    nodes(statement.getElseStatements());
+                    break;
+                }
+                case Ast.FOR: {
+                    Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+                    tag(FOR);
+                    out.putInt(string(statement.getName()));
+                    node(statement.getValue());
+                    nodes(statement.getStatements());
+                    break;
+                }
+                case Ast.WHILE:
+                    tag(WHILE);
+                    node(((Ast.Stmt.While) ast).getCondition());
+                    nodes(((Ast.Stmt.While) ast).getStatements());
+                    break;
+                case Ast.RETURN:
+                    tag(RETURN);
+                    node(((Ast.Stmt.Return) ast).getValue());
+                    break;
+                case Ast.ERROR:
+                    tag(ERROR);
+                    out.putInt(string(((Ast.Stmt.Error) ast).getMessage()));
+                    out.putInt(((Ast.Stmt.Error) ast).getIndex());
+                    break;
+                case Ast.LITERAL: {
+                    Ast.Expr.Literal literal = (Ast.Expr.Literal) ast;
+                    tag(LITERAL);
+                    type(literal.hasType() ? literal.getType() : null);
+                    literal(literal.getLiteral());
+                    break;
+                }
+                case Ast.GROUP: {
+                    Ast.Expr.Group group = (Ast.Expr.Group) ast;
+                    tag(GROUP);
+                    type(group.hasType() ? group.getType() : null);
+                    node(group.getExpression());
+                    break;
+                }
+                case Ast.BINARY: {
+                    //the chain of left operands is written innermost first, so it is read in a loop
+                    List<Ast.Expr.Binary> chain = new ArrayList<>();
+                    Ast.Expr expr = (Ast.Expr) ast;
+                    while (expr.getKind() == Ast.BINARY) {
+                        chain.add((Ast.Expr.Binary) expr);
+                        expr = ((Ast.Expr.Binary) expr).getLeft();
+                    }
+                    tag(BINARY);
+                    out.putInt(chain.size());
+                    node(expr);
+                    for (int i = chain.size() - 1; i >= 0; i--) {
+                        Ast.Expr.Binary binary = chain.get(i);
+                        out.putInt(string(binary.getOperator()));
+                        type(binary.hasType() ? binary.getType() : null);
+                        node(binary.getRight());
+                    }
+                    break;
+                }
+                case Ast.ACCESS: {
+                    Ast.Expr.Access access = (Ast.Expr.Access) ast;
+                    tag(ACCESS);
+                    out.putInt(string(access.getName()));
+                    out.putInt(variable(access.hasVariable() ? access.getVariable() : null));
+                    node(access.getReceiver());
+                    break;
+                }
+                case Ast.FUNCTION: {
+                    Ast.Expr.Function function = (Ast.Expr.Function) ast;
+                    tag(FUNCTION);
+                    out.putInt(string(function.getName()));
+                    out.putInt(function(function.hasFunction() ? function.getFunction() : null));
+                    node(function.getReceiver());
+                    nodes(function.getArguments());
+                    break;
+                }
+                default:
+                    throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
+            }
+        }
+
+        private void node(Optional<? extends Ast> ast) {
+            if (ast.isPresent()) {
+                node(ast.get());
+            } else {
+                tag(-1);
+            }
+        }
+
+        private void nodes(List<? extends Ast> asts) {
+            out.putInt(asts.size());
+            for (Ast ast : asts) {
+                node(ast);
+            }
+        }
+
+        private void tag(int kind) {
+            out.ensure(1);
+            out.buffer.put((byte) kind);
+        }
+
+        private void literal(Object literal) {
+            if (literal == null) {
+                tag(NIL);
+            } else if (literal instanceof Boolean) {
+                tag(BOOLEAN);
+                out.putInt((Boolean) literal ? 1 : 0);
+            } else if (literal instanceof Character) {
+                tag(CHARACTER);
+                out.putInt((Character) literal);
+            } else if (literal instanceof String) {
+                tag(STRING);
+                out.putInt(string((String) literal));
+            } else if (literal instanceof BigInteger) {
+                tag(INTEGER);
+                byte[] bytes = ((BigInteger) literal).toByteArray();
+                out.putInt(bytes.length);
+                out.put(bytes);
+            } else if (literal instanceof BigDecimal) {
+                tag(DECIMAL);
+                byte[] bytes = ((BigDecimal) literal).unscaledValue().toByteArray();
+                out.putInt(((BigDecimal) literal).scale());
+                out.putInt(bytes.length);
+                out.put(bytes);
+            } else {
+                throw new IllegalArgumentException("Unsupported literal " + literal + ".");
+            }
+        }
+
+        private void type(Environment.Type type) {
+            out.putInt(type == null ? -1 : string(type.getName()));
+        }
+
+        private void strings(List<String> names) {
+            out.putInt(names.size());
+            for (String name : names) {
+                out.putInt(string(name));
+            }
+        }
+
+        private int string(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer id = stringIds.get(string);
+            if (id == null) {
+                id = strings.size();
+                strings.add(string);
+                stringIds.put(string, id);
+            }
+            return id;
+        }
+
+        private int variable(Environment.Variable variable) {
+            if (variable == null) {
+                return -1;
+            }
+            Integer id = variableIds.get(variable);
+            if (id == null) {
+                id = variables.size();
+                variables.add(variable);
+                variableIds.put(variable, id);
+                string(variable.getName());
+                string(variable.getJvmName());
+                string(variable.getType().getName());
+            }
+            return id;
+        }
+
+        private int function(Environment.Function function) {
+            if (function == null) {
+                return -1;
+            }
+            Integer id = functionIds.get(function);
+            if (id == null) {
+                id = functions.size();
+                functions.add(function);
+                functionIds.put(function, id);
+                string(function.getName());
+                string(function.getJvmName());
+                for (Environment.Type type : function.getParameterTypes()) {
+                    string(type.getName());
+                }
+                string(function.getReturnType().getName());
+            }
+            return id;
+        }
+
+    }
+
+    /**
+     * Reads the tables and then the tree.
+     */
+    private static final class Reader {
+
+        private final ByteBuffer in;
+        private String[] strings;
+        private Environment.Variable[] variables;
+        private Environment.Function[] functions;
+
+        private Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private Ast.Source source() {
+            if (in.remaining() < 8 || in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a compiled program.");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported version " + version + ", expected " + VERSION + ".");
+            }
+            strings = new String[getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(bytes(getInt()), StandardCharsets.UTF_8);
+            }
+            variables = new Environment.Variable[getInt()];
+            for (int i = 0; i < variables.length; i++) {
+                variables[i] = new Environment.Variable(string(), string(), type(), Environment.NIL);
+            }
+            functions = new Environment.Function[getInt()];
+            for (int i = 0; i < functions.length; i++) {
+                String name = string();
+                String jvmName = string();
+                List<Environment.Type> parameterTypes = new ArrayList<>();
+                for (int count = getInt(); parameterTypes.size() < count; ) {
+                    parameterTypes.add(type());
+                }
+                functions[i] = new Environment.Function(name, jvmName, parameterTypes, type(), args -> Environment.NIL);
+            }
+            return (Ast.Source) node(in.get());
+        }
+
+        private Ast node(int tag) {
+            switch (tag) {
+                case SOURCE:
+                    return new Ast.Source(this.<Ast.Field>nodes(), this.<Ast.Method>nodes());
+                case FIELD: {
+                    String name = string();
+                    String typeName = string();
+                    Environment.Variable variable = variable();
+                    Ast.Field field = new Ast.Field(name, typeName, optional());
+                    field.setVariable(variable);
+                    return field;
+                }
+                case METHOD: {
+                    String name = string();
+                    List<String> parameters = strings();
+                    List<String> parameterTypeNames = strings();
+                    Optional<String> returnTypeName = Optional.ofNullable(string());
+                    Environment.Function function = function();
+                    Ast.Method method = new Ast.Method(name, parameters, parameterTypeNames, returnTypeName, this.<Ast.Stmt>nodes());
+                    method.setFunction(function);
+                    return method;
+                }
+                case EXPRESSION:
+                    return new Ast.Stmt.Expression(expr());
+                case DECLARATION: {
+                    String name = string();
+                    Optional<String> typeName = Optional.ofNullable(string());
+                    Environment.Variable variable = variable();
+                    Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(name, typeName, optional());
+                    declaration.setVariable(variable);
+                    return declaration;
+                }
+                case ASSIGNMENT:
+                    return new Ast.Stmt.Assignment(expr(), expr());
+                case IF:
+                    return new Ast.Stmt.If(expr(), this.<Ast.Stmt>nodes(), this.<Ast.Stmt>nodes());
+                case FOR:
+                    return new Ast.Stmt.For(string(), expr(), this.<Ast.Stmt>nodes());
+                case WHILE:
+                    return new Ast.Stmt.While(expr(), this.<Ast.Stmt>nodes());
+                case RETURN:
+                    return new Ast.Stmt.Return(expr());
+                case ERROR:
+                    return new Ast.Stmt.Error(string(), getInt());
+                case LITERAL: {
+                    Environment.Type type = type();
+                    Ast.Expr.Literal literal = new Ast.Expr.Literal(literal());
+                    literal.setType(type);
+                    return literal;
+                }
+                case GROUP: {
+                    Environment.Type type = type();
+                    Ast.Expr.Group group = new Ast.Expr.Group(expr());
+                    group.setType(type);
+                    return group;
+                }
+                case BINARY: {
+                    int count = getInt();
+                    Ast.Expr expr = expr();
+                    for (int i = 0; i < count; i++) {
+                        String operator = string();
+                        Environment.Type type = type();
+                        Ast.Expr.Binary binary = new Ast.Expr.Binary(operator, expr, expr());
+                        binary.setType(type);
+                        expr = binary;
+                    }
+                    return expr;
+                }
+                case ACCESS: {
+                    String name = string();
+                    Environment.Variable variable = variable();
+                    Ast.Expr.Access access = new Ast.Expr.Access(this.<Ast.Expr>optional(), name);
+                    access.setVariable(variable);
+                    return access;
+                }
+                case FUNCTION: {
+                    String name = string();
+                    Environment.Function function = function();
+                    Optional<Ast.Expr> receiver = optional();
+                    Ast.Expr.Function call = new Ast.Expr.Function(receiver, name, this.<Ast.Expr>nodes());
+                    call.setFunction(function);
+                    return call;
+                }
+                default:
+                    throw new IllegalArgumentException("Malformed compiled program, unknown node tag " + tag + ".");
+            }
+        }
+
+        private Ast.Expr expr() {
+            return (Ast.Expr) node(in.get());
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> Optional<T> optional() {
+            byte tag = in.get();
+            return tag < 0 ? Optional.empty() : Optional.of((T) node(tag));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> List<T> nodes() {
+            int count = getInt();
+            List<T> asts = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                asts.add((T) node(in.get()));
+            }
+            return asts;
+        }
+
+        private Object literal() {
+            switch (in.get()) {
+                case NIL:
+                    return null;
+                case BOOLEAN:
+                    return getInt() != 0;
+                case CHARACTER:
+                    return (char) getInt();
+                case STRING:
+                    return string();
+                case INTEGER:
+                    return new BigInteger(bytes(getInt()));
+                case DECIMAL:
+                    int scale = getInt();
+                    return new BigDecimal(new BigInteger(bytes(getInt())), scale);
+                default:
+                    throw new IllegalArgumentException("Malformed compiled program, unknown literal tag.");
+            }
+        }
+
+        private List<String> strings() {
+            int count = getInt();
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                names.add(string());
+            }
+            return names;
+        }
+
+        private String string() {
+            int id = getInt();
+            return id < 0 ? null : strings[id];
+        }
+
+        private Environment.Type type() {
+            String name = string();
+            return name == null ? null : Environment.getType(name);
+        }
+
+        private Environment.Variable variable() {
+            int id = getInt();
+            return id < 0 ? null : variables[id];
+        }
+
+        private Environment.Function function() {
+            int id = getInt();
+            return id < 0 ? null : functions[id];
+        }
+
+        private byte[] bytes(int length) {
+            if (length < 0 || length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return bytes;
+        }
+
+        private int getInt() {
+            int bits = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                bits |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return bits - 1;
+                }
+                if (shift == 28) {
+                    throw new IllegalArgumentException("Malformed compiled program, integer too long.");
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package plc.project;
+
+/**
+ * Keeps the tokens of a source up to date across small edits, such as
+ * keystrokes in an editor, without lexing the whole source again.
+ *
+ * An edit only re-lexes from the last token that could not have seen it (a
+ * token may look up to two characters past its end) until a new token starts
+ * exactly where a token after the edit used to. Since lexing only depends on
+ * the position it starts from, the remaining tokens are the same as before,
+ * just shifted by the change in length.
+ *
+ * Names typed during an edit stay interned after they are deleted, so once
+ * the symbol table grows past {@link #MAX_SYMBOLS} names, the next edit moves
+ * the tokens to a new table holding only the names still in use.
+ */
+public final class IncrementalLexer {
+
+    //how many characters past the end of a token the lexer may have looked at
+    private static final int LOOKAHEAD = 2;
+
+    //names interned before an edit starts a new symbol table, so a long session does not grow it without bound
+    private static final int MAX_SYMBOLS = 1 << 16;
+
+    private TokenBuffer tokens;
+
+    public IncrementalLexer(CharSequence input) {
+        this(new Lexer(input).lexBuffer());
+    }
+
+    public IncrementalLexer(TokenBuffer tokens) {
+        if (!tokens.isIndexed()) {
+            throw new IllegalArgumentException("The tokens must be lexed from their source.");
+        }
+        this.tokens = tokens;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public CharSequence getSource() {
+        return tokens.getSource();
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} with the inserted
+     * text and returns the tokens of the edited source. If the edited source
+     * fails to lex, the exception is thrown and the previous tokens are kept.
+     */
+    public TokenBuffer edit(int offset, int removed, String inserted) {
+        CharSequence source = tokens.getSource();
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed) + ") out of bounds for length " + source.length());
+        }
+        String edited = new StringBuilder(source.length() - removed + inserted.length())
+                .append(source, 0, offset)
+                .append(inserted)
+                .append(source, offset + removed, source.length())
+                .toString();
+        int shift = inserted.length() - removed;
+
+        //tokens ending (with lookahead) before the edit are unaffected
+        int kept = unaffected(offset);
+        SymbolTable symbols = tokens.getSymbols();
+        if (symbols.size() > MAX_SYMBOLS) {
+            //the kept tokens are interned again into the new table as they are copied
+            symbols = new SymbolTable();
+        }
+        TokenBuffer result = new TokenBuffer(edited, tokens.size() + 16, symbols);
+        result.addAll(tokens, 0, kept, 0);
+        Lexer lexer = new Lexer(edited);
+        lexer.seek(kept == 0 ? 0 : end(kept - 1));
+
+        //old tokens starting after the edit are candidates to line up with
+        int old = kept;
+        while (old < tokens.size() && tokens.getIndex(old) < offset + removed) {
+            old++;
+        }
+        while (lexer.next(result)) {
+            int start = result.getIndex(result.size() - 1);
+            while (old < tokens.size() && tokens.getIndex(old) + shift < start) {
+                old++;
+            }
+            if (old < tokens.size() && tokens.getIndex(old) + shift == start) {
+                result.addAll(tokens, old + 1, tokens.size(), shift);
+                break;
+            }
+        }
+        tokens = result;
+        return result;
+    }
+
+    /**
+     * Returns the number of leading tokens the lexer finished with before
+     * reaching the offset, using a binary search since token ends increase.
+     */
+    private int unaffected(int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (end(middle) + LOOKAHEAD <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int end(int token) {
+        return tokens.getIndex(token) + tokens.getLength(token);
+    }
+
+}
@@ -1,155 +1,465 @@
 package plc.project;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
-public final class Lexer {
+public final class Lexer implements Iterable<Token>, TokenSource {
+
+    //character classes, combined as bit flags in the class table below
+    private static final int IDENTIFIER_START = 1;
+    private static final int IDENTIFIER_PART = 1 << 1;
+    private static final int DIGIT = 1 << 2;
+    private static final int SIGN = 1 << 3;
+    private static final int WHITESPACE = 1 << 4;
+    private static final int ESCAPE = 1 << 5;
+    private static final int COMPARISON = 1 << 6;
+    private static final int CHARACTER_STOP = 1 << 7;
+    private static final int STRING_STOP = 1 << 8;
+
+    //class of every ASCII character; anything above 127 has no class at all
+    private static final int[] CLASSES = new int[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] |= IDENTIFIER_START | IDENTIFIER_PART;
+            CLASSES[Character.toLowerCase(c)] |= IDENTIFIER_START | IDENTIFIER_PART;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] |= DIGIT | IDENTIFIER_PART;
+        }
+        CLASSES['_'] |= IDENTIFIER_START | IDENTIFIER_PART;
+        CLASSES['-'] |= IDENTIFIER_PART | SIGN;
+        CLASSES['+'] |= SIGN;
+        for (char c : " \b\n\r\t".toCharArray()) {
+            CLASSES[c] |= WHITESPACE;
+        }
+        for (char c : LiteralDecoder.ESCAPES.toCharArray()) {
+            CLASSES[c] |= ESCAPE;
+        }
+        for (char c : "<>!=".toCharArray()) {
+            CLASSES[c] |= COMPARISON;
+        }
+        for (char c : "\'\n\r\\".toCharArray()) {
+            CLASSES[c] |= CHARACTER_STOP;
+        }
+        for (char c : "\"\n\r\\".toCharArray()) {
+            CLASSES[c] |= STRING_STOP;
+        }
+    }
+
+    //returned by lexToken for whitespace and escapes, which are not tokens
+    private static final Token TRIVIA = new Token(null, "", 0);
+
+    //lexers handed out by pooled, one per thread
+    private static final ThreadLocal<Lexer> POOL = ThreadLocal.withInitial(() -> new Lexer(""));
+
+    //names a pooled lexer or reused buffer interns before it starts a new symbol table, so it does not grow without bound
+    private static final int POOLED_SYMBOLS = 1 << 16;
 
     private final CharStream chars;
+    private SymbolTable symbols;
+    private TriviaTable trivia = null;
+    private LineIndex lines = null;
+    private List<ParseException> errors = null;
 
-    public Lexer(String input) {
+    public Lexer(CharSequence input) {
+        this(input, new SymbolTable());
+    }
+
+    //interns identifiers into a table shared with other lexers, so the same name has the same id across files
+    public Lexer(CharSequence input, SymbolTable symbols) {
         chars = new CharStream(input);
+        this.symbols = symbols;
+    }
+
+    //lexes a file mapped into memory, reading its bytes in place instead of decoding it into a string
+    public Lexer(Path path) throws IOException {
+        this(MappedSource.map(path));
+    }
+
+    //lexes straight from a reader, holding only the current token and a couple characters of lookahead in memory
+    public Lexer(Reader reader) {
+        chars = new CharStream(reader, 8192);
+        symbols = new SymbolTable();
+    }
+
+    //lexes straight from a channel of UTF-8 encoded source
+    public Lexer(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    //returns this thread's lexer reset to the input; it is handed out again by the next call, so it must not be kept
+    public static Lexer pooled(CharSequence input) {
+        Lexer lexer = POOL.get();
+        if (lexer.symbols.size() > POOLED_SYMBOLS) {
+            //buffers lexed earlier still resolve their ids in the old table, so it is replaced rather than cleared
+            lexer.symbols = new SymbolTable();
+        }
+        return lexer.reset(input);
+    }
+
+    //starts lexing a new input with the same lexer, reusing its buffers and symbol table, and stops recording trivia and errors
+    public Lexer reset(CharSequence input) {
+        chars.reset(input);
+        trivia = null;
+        lines = null;
+        errors = null;
+        return this;
+    }
 
+    //returns the lines of an in-memory input, which are only found once a position is looked up
+    public LineIndex getLines() {
+        if (chars.reader != null) {
+            throw new IllegalStateException("A streamed input has no line index.");
+        }
+        if (lines == null) {
+            lines = new LineIndex(chars.input);
+        }
+        return lines;
     }
 
     public CharStream thing(){
         return chars;
     }
 
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    //starts recording the whitespace and escapes between tokens, for tools such as formatters that need them
+    public TriviaTable recordTrivia() {
+        trivia = new TriviaTable();
+        return trivia;
+    }
+
+    //keeps lexing past invalid literals, recording an error for each one and dropping it, so one pass finds every error
+    public List<ParseException> recordErrors() {
+        errors = new ArrayList<>();
+        return errors;
+    }
+
     //repeatedly lexes the charstream, passing into specific type functions when such a type is found
     public List<Token> lex() {
-        List<Token> tokens = new ArrayList<Token>();
-        while(chars.has(0)){
-            Token t = (lexToken());
-            if(t.getType()!= null) tokens.add(t);
+        return lex(new ArrayList<Token>());
+    }
+
+    //same as lex, but adds the tokens to a list the caller can clear and reuse
+    public List<Token> lex(List<Token> tokens) {
+        while(skipTrivia()){
+            Token.Type type = scanToken();
+            if (type != null) {
+                tokens.add(chars.emit(type, symbols));
+            }
         }
         return tokens;
     }
 
-    public Token lexToken() {
+    //pulls tokens one at a time, only lexing (and reading) as far as the caller asks for
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
 
-        if (peek("[A-Za-z_]")) {
-            return lexIdentifier();
-        } else if (peek("[+-]", "[0-9]") || peek("[0-9]")) {
-            return lexNumber();
-        } else if (peek("\'")) {
-            match("\'");
-            return lexCharacter();
-        } else if (peek("\"")) {
-            match("\"");
-            return lexString();
-        } else if (match("\\\\", "[bnrt\'\"\\\\]")) {
-            lexEscape();
-            return new Token(null, "", 0);
-        } else if (match("[ \b\n\r\t]")) {
-            chars.skip();
-            return new Token(null, "", 0);
-        } else {
-            return lexOperator();
-        }
-    }
+            private Token next = null;
 
-    public Token lexIdentifier() {
+            @Override
+            public boolean hasNext() {
+                while (next == null && skipTrivia()) {
+                    Token.Type type = scanToken();
+                    if (type != null) {
+                        next = chars.emit(type, symbols);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Token token = next;
+                next = null;
+                return token;
+            }
 
-        while(match("[A-Za-z0-9_-]"));
-        Token id = (chars.emit(Token.Type.IDENTIFIER));
-        return id;
+        };
     }
 
-    public Token lexNumber() {
+    //lexes every token into a compact buffer backed by the input, without creating any token objects
+    public TokenBuffer lexBuffer() {
+        TokenBuffer tokens = newBuffer(Math.max(chars.limit / 4, 16));
+        while(next(tokens));
+        return tokens;
+    }
+
+    //same as lexBuffer, but clears and refills a buffer from an earlier lex instead of allocating one
+    public TokenBuffer lexBuffer(TokenBuffer tokens) {
+        if (chars.reader != null) {
+            throw new IllegalStateException("A streamed input cannot refill a buffer.");
+        }
+        SymbolTable table = tokens.getSymbols();
+        if (table != null && table.size() > POOLED_SYMBOLS) {
+            //as with pooled, other buffers may still resolve their ids in the full table, so it is replaced rather than cleared
+            table = new SymbolTable();
+        }
+        tokens.reset(chars.input, table);
+        while(next(tokens));
+        return tokens;
+    }
 
-        if(match("[+-]"));
-        while(match("[0-9]"));
-        if(peek("\\.","[0-9]")){
-            match("\\.");
-            while(match("[0-9]"));
-            Token de = (chars.emit(Token.Type.DECIMAL));
-            return de;
+    //creates a buffer over the input for next to lex into, sharing this lexer's symbol table; a streamed input is not kept, so the buffer copies the characters of its tokens
+    @Override
+    public TokenBuffer newBuffer(int capacity) {
+        if (chars.reader != null) {
+            return TokenBuffer.copying(capacity, symbols);
         }
-        else {
-            Token in = (chars.emit(Token.Type.INTEGER));
-            return in;
+        return new TokenBuffer(chars.input, capacity, symbols);
+    }
+
+    //lexes the next token into the buffer, skipping whitespace before it, and returns false once the input is used up
+    @Override
+    public boolean next(TokenBuffer tokens) {
+        while(skipTrivia()) {
+            Token.Type type = scanToken();
+            if (type != null) {
+                chars.emit(type, tokens);
+                return true;
+            }
         }
+        return false;
+    }
+
+    //moves the stream to the given index, which the next token (or whitespace) is lexed from
+    void seek(int index) {
+        chars.seek(index);
+    }
+
+    //index of the next character to be lexed
+    int position() {
+        return chars.index;
+    }
+
+    public Token lexToken() {
+        return emit(scanToken());
+    }
+
+    public Token lexIdentifier() {
+        return chars.emit(scanIdentifier(), symbols);
+    }
+
+    public Token lexNumber() {
+        return chars.emit(scanNumber());
     }
 
     public Token lexCharacter() {
+        return emit(scanCharacter());
+    }
+
+    public Token lexString() {
+        return emit(scanString());
+    }
+
+    public void lexEscape() {
+        chars.skip();
+    }
+
+    public Token lexOperator() {
+        return chars.emit(scanOperator());
+    }
 
-        if(!match("([^\'\\n\\r\\\\])") && !match("\\\\", "[bnrt\'\"\\\\]")){
-            throw new ParseException("Invalid Character",chars.index);
+    //emits a token of the type, or returns the trivia token when nothing was lexed
+    private Token emit(Token.Type type) {
+        if (type == null) {
+            return TRIVIA;
         }
-        else if(!match("\'")){
-            throw new ParseException("Mismatched Single Quote",chars.index);
+        return chars.emit(type, symbols);
+    }
+
+    //picks the token type from the class of the first one or two characters, returning null for whitespace and escapes
+    private Token.Type scanToken() {
+        if (!chars.has(0)) {
+            return scanOperator();
         }
-        else {
-            Token ch = chars.emit(Token.Type.CHARACTER);
-            return ch;
+        char c = chars.get(0);
+        int type = classOf(c);
+        if ((type & IDENTIFIER_START) != 0) {
+            return scanIdentifier();
+        } else if ((type & DIGIT) != 0 || ((type & SIGN) != 0 && is(1, DIGIT))) {
+            return scanNumber();
+        } else if (c == '\'') {
+            chars.advance();
+            return scanCharacter();
+        } else if (c == '\"') {
+            chars.advance();
+            return scanString();
+        } else if ((type & WHITESPACE) != 0 || (c == '\\' && is(1, ESCAPE))) {
+            skipTrivia();
+            return null;
+        } else {
+            return scanOperator();
         }
     }
 
-    public Token lexString() {
-
-        while ((match("([^\"\\n\\r\\\\])") || match("\\\\", "[bnrt\'\"\\\\]"))) { /* go */}
-        if (match("\"")) {
-            Token str = chars.emit(Token.Type.STRING);
-            return str;
+    //skips a whole run of whitespace and escapes in one go, returning true if a token follows
+    private boolean skipTrivia() {
+        int start = chars.index;
+        while (chars.has(0)) {
+            char c = chars.get(0);
+            if (c < CLASSES.length && (CLASSES[c] & WHITESPACE) != 0) {
+                chars.advanceRun(Runs.WHITESPACE);
+            } else if (c == '\\' && is(1, ESCAPE)) {
+                chars.advance();
+                chars.advance();
+            } else {
+                break;
+            }
         }
-        else {
-            System.out.println(chars.index);
-            throw new ParseException("Invalid Character",chars.index);
+        if (chars.index > start) {
+            chars.skip();
+            if (trivia != null) {
+                trivia.add(start, chars.index - start);
+            }
         }
+        return chars.has(0);
     }
 
-    public void lexEscape() {
-        chars.skip();
+    private Token.Type scanIdentifier() {
+        chars.advanceRun(Runs.IDENTIFIER);
+        return Token.Type.IDENTIFIER;
     }
 
-    public Token lexOperator() {
-        if(match("[<>!=]")){
-            match("=");
+    private Token.Type scanNumber() {
+        if(is(0, SIGN)) chars.advance();
+        chars.advanceRun(Runs.DIGIT);
+        if(chars.has(0) && chars.get(0) == '.' && is(1, DIGIT)){
+            chars.advance();
+            chars.advanceRun(Runs.DIGIT);
+            return Token.Type.DECIMAL;
         }
-        else match(".");
-        Token op = chars.emit(Token.Type.OPERATOR);
-        return op;
+        return Token.Type.INTEGER;
     }
 
-    //checks to see if the specified pattern occurs in the following characters
-    public boolean peek(String... patterns) {
-        for (int i = 0; i < patterns.length; i++){
-            if(!chars.has(i) || !String.valueOf(chars.get(i)).matches(patterns[i]))
-                return false;
+    private Token.Type scanCharacter() {
+        if(!matchBody(CHARACTER_STOP) && !matchEscape()){
+            return fail("Invalid Character", '\'');
+        }
+        else if(!chars.has(0) || chars.get(0) != '\''){
+            return fail("Mismatched Single Quote", '\'');
+        }
+        chars.advance();
+        return Token.Type.CHARACTER;
+    }
+
+    private Token.Type scanString() {
+        while (matchBody(STRING_STOP) || matchEscape()) { /* go */}
+        if (!chars.has(0) || chars.get(0) != '\"') {
+            return fail("Invalid Character", '\"');
         }
-        return true;
+        chars.advance();
+        return Token.Type.STRING;
     }
 
-    //uses peek to advance the string past matching tokens
-    public boolean match(String... patterns) {
-        boolean peek = peek(patterns);
-        if(peek){
-            for (int i = 0; i < patterns.length; i++){
+    //throws the error, or when recording errors, records it and drops the literal up to its closing quote or the end of the line
+    private Token.Type fail(String message, char quote) {
+        ParseException error = new ParseException(message, chars.index);
+        if (errors == null) {
+            throw error;
+        }
+        errors.add(error);
+        while (chars.has(0) && chars.get(0) != quote && chars.get(0) != '\n' && chars.get(0) != '\r') {
+            if (chars.get(0) == '\\' && chars.has(1) && chars.get(1) != '\n' && chars.get(1) != '\r') {
                 chars.advance();
             }
+            chars.advance();
+        }
+        if (chars.has(0) && chars.get(0) == quote) {
+            chars.advance();
+        }
+        chars.skip();
+        return null;
+    }
+
+    private Token.Type scanOperator() {
+        if(is(0, COMPARISON)){
+            chars.advance();
+            if(chars.has(0) && chars.get(0) == '=') chars.advance();
+        }
+        else if(chars.has(0)) chars.advance();
+        return Token.Type.OPERATOR;
+    }
+
+    //looks up the class flags of a character, with non-ascii characters having none
+    private static int classOf(char c) {
+        return c < CLASSES.length ? CLASSES[c] : 0;
+    }
+
+    //checks whether the character at the offset belongs to any of the given classes
+    private boolean is(int offset, int classes) {
+        return chars.has(offset) && (classOf(chars.get(offset)) & classes) != 0;
+    }
+
+    //advances past one literal body character, which is anything outside of the stop class
+    private boolean matchBody(int stop) {
+        if (chars.has(0) && (classOf(chars.get(0)) & stop) == 0) {
+            chars.advance();
+            return true;
+        }
+        return false;
+    }
+
+    //advances past a backslash and the escaped character following it
+    private boolean matchEscape() {
+        if (chars.has(0) && chars.get(0) == '\\' && is(1, ESCAPE)) {
+            chars.advance();
+            chars.advance();
+            return true;
         }
-        return peek;
+        return false;
     }
 
     public static final class CharStream {
 
-        private final String input;
+        private CharSequence input;
+        private Reader reader;
+        private char[] window;
+        private int base = 0;
+        private int limit;
         private int index = 0;
         private int length = 0;
 
-        public CharStream(String input) {
+        public CharStream(CharSequence input) {
             this.input = input;
+            this.reader = null;
+            this.limit = input.length();
         }
 
-        //determines if the passed offset is within range
+        //streams the input from a reader through a window that only holds the current token and lookahead
+        public CharStream(Reader reader, int capacity) {
+            this.reader = reader;
+            this.window = new char[Math.max(capacity, 2)];
+            this.input = CharBuffer.wrap(window);
+            this.limit = 0;
+        }
+
+        //determines if the passed offset is within range, reading more of the input if needed
         public boolean has(int offset) {
-            return index + offset < input.length();
+            return index + offset - base < limit || fill(index + offset - base);
         }
 
         //gets the character at a specified offset
         public char get(int offset){
-            return input.charAt(index + offset);
+            return input.charAt(index + offset - base);
         }
 
         //pushes the index forward one, effectively removing the left-most character
@@ -158,6 +468,25 @@ public final class Lexer {
             length ++;
         }
 
+        //advances over a whole run of characters of a kind at once, instead of checking them one by one
+        void advanceRun(int kind) {
+            do {
+                int end = Runs.scan(input, index - base, limit, kind);
+                length += end - (index - base);
+                index = end + base;
+            } while (index - base == limit && has(0));
+        }
+
+        //starts over on a new in-memory input, keeping the window of a streamed one for reuse
+        void reset(CharSequence input) {
+            this.input = input;
+            this.reader = null;
+            this.base = 0;
+            this.limit = input.length();
+            this.index = 0;
+            this.length = 0;
+        }
+
         //resets current token length to zero, starting a new token
         public void skip() {
             length = 0;
@@ -166,7 +495,68 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip();
-            return new Token(type, input.substring(start, index), start);
+            return new Token(type, input.subSequence(start - base, index - base).toString(), start);
+        }
+
+        //same as emit, but interns identifiers so that tokens with the same name share their literal
+        public Token emit(Token.Type type, SymbolTable symbols) {
+            if (type != Token.Type.IDENTIFIER) {
+                return emit(type);
+            }
+            int start = index - length;
+            int symbol = symbols.intern(input, start - base, length);
+            skip();
+            return new Token(type, symbols.getName(symbol), start, symbol);
+        }
+
+        //jumps to an index of an in-memory input, dropping the current token
+        void seek(int index) {
+            if (reader != null) {
+                throw new IllegalStateException("A streamed input cannot be repositioned.");
+            }
+            this.index = index;
+            skip();
+        }
+
+        //same as emit, but appends the token to a buffer instead of creating it, copying the characters of a streamed one
+        public void emit(Token.Type type, TokenBuffer tokens) {
+            int start = index - length;
+            if (reader != null) {
+                tokens.append(type, input, start - base, length, start);
+            } else {
+                tokens.add(type, start, length);
+            }
+            skip();
+        }
+
+        //drops everything before the current token and reads until the window position is available
+        private boolean fill(int position) {
+            if (reader == null) {
+                return false;
+            }
+            int keep = index - length - base;
+            if (keep > 0) {
+                System.arraycopy(window, keep, window, 0, limit - keep);
+                base += keep;
+                limit -= keep;
+                position -= keep;
+            }
+            try {
+                while (position >= limit) {
+                    if (limit == window.length) {
+                        window = Arrays.copyOf(window, window.length * 2);
+                        input = CharBuffer.wrap(window);
+                    }
+                    int read = reader.read(window, limit, window.length - limit);
+                    if (read < 0) {
+                        return false;
+                    }
+                    limit += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
         }
     }
-}
\ No newline at end of file
+}
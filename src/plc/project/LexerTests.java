@@ -5,9 +5,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class LexerTests {
@@ -165,6 +174,18 @@ public class LexerTests {
                         new Token(Token.Type.CHARACTER, "\'\"\'", 0),
                         new Token(Token.Type.IDENTIFIER, "string", 3),
                         new Token(Token.Type.STRING, "\"\'\"", 9)
+                )),
+                Arguments.of("Signed After Identifier", "x+1", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "x", 0),
+                        new Token(Token.Type.INTEGER, "+1", 1)
+                )),
+                Arguments.of("Stray Escape", "a \\n b", Arrays.asList(
+                        new Token(Token.Type.IDENTIFIER, "a", 0),
+                        new Token(Token.Type.IDENTIFIER, "b", 5)
+                )),
+                Arguments.of("Non-ASCII Operator", "\u00e9x", Arrays.asList(
+                        new Token(Token.Type.OPERATOR, "\u00e9", 0),
+                        new Token(Token.Type.IDENTIFIER, "x", 1)
                 ))
         );
     }
@@ -182,6 +203,242 @@ public class LexerTests {
         Assertions.assertEquals(8, invalidEscape.getIndex());
     }
 
+    @Test
+    void testTrivia() {
+        Lexer lexer = new Lexer("  one \\n\ttwo;\n");
+        TriviaTable trivia = lexer.recordTrivia();
+        Assertions.assertEquals(Arrays.asList(
+                new Token(Token.Type.IDENTIFIER, "one", 2),
+                new Token(Token.Type.IDENTIFIER, "two", 9),
+                new Token(Token.Type.OPERATOR, ";", 12)
+        ), lexer.lex());
+        Assertions.assertEquals(3, trivia.size());
+        Assertions.assertEquals(0, trivia.getStart(0));
+        Assertions.assertEquals(2, trivia.getLength(0));
+        Assertions.assertEquals(5, trivia.getStart(1));
+        Assertions.assertEquals(4, trivia.getLength(1));
+        Assertions.assertEquals(13, trivia.getStart(2));
+        Assertions.assertEquals(1, trivia.getLength(2));
+    }
+
+    @Test
+    void testReset() {
+        Lexer lexer = new Lexer("LET x = 1;");
+        List<Token> tokens = lexer.lex();
+        TokenBuffer buffer = lexer.reset("print(\"a\", x);").lexBuffer();
+        Assertions.assertEquals(new Lexer("print(\"a\", x);").lex(), buffer.toList());
+        Assertions.assertSame(buffer, lexer.reset("x <= 2.0").lexBuffer(buffer));
+        Assertions.assertEquals(new Lexer("x <= 2.0").lex(), buffer.toList());
+        Assertions.assertEquals(tokens, lexer.reset("LET x = 1;").lex(new ArrayList<>()));
+        Assertions.assertEquals(tokens.get(1).getSymbol(), buffer.getSymbol(0));
+
+        Lexer pooled = Lexer.pooled("one two");
+        Assertions.assertEquals(2, pooled.lex().size());
+        Assertions.assertSame(pooled, Lexer.pooled("three"));
+        Assertions.assertEquals(Arrays.asList(new Token(Token.Type.IDENTIFIER, "three", 0)), pooled.lex());
+
+        TokenBuffer kept = Lexer.pooled("hello").lexBuffer();
+        for (int i = 0; i < 70000; i++) {
+            Lexer.pooled("n" + i).lexBuffer();
+        }
+        Assertions.assertEquals("hello", kept.getLiteral(0));
+        Assertions.assertNotSame(kept.getSymbols(), Lexer.pooled("hello").lexBuffer().getSymbols());
+
+        TokenBuffer reused = new Lexer("hello").lexBuffer();
+        SymbolTable full = reused.getSymbols();
+        for (int i = 0; i < 70000; i++) {
+            Lexer.pooled("n" + i).lexBuffer(reused);
+        }
+        Assertions.assertNotSame(full, reused.getSymbols());
+        Assertions.assertTrue(reused.getSymbols().size() < 70000);
+        Assertions.assertEquals("n69999", reused.getLiteral(0));
+    }
+
+    @Test
+    void testSymbols() {
+        List<Token> tokens = new Lexer("LET name = name + DEFAULT; END").lex();
+        Assertions.assertEquals(SymbolTable.LET, tokens.get(0).getKeyword());
+        Assertions.assertEquals(tokens.get(1).getSymbol(), tokens.get(3).getSymbol());
+        Assertions.assertSame(tokens.get(1).getLiteral(), tokens.get(3).getLiteral());
+        Assertions.assertEquals(-1, tokens.get(1).getKeyword());
+        Assertions.assertEquals(-1, tokens.get(5).getKeyword());
+        Assertions.assertNotEquals(tokens.get(1).getSymbol(), tokens.get(5).getSymbol());
+        Assertions.assertEquals(-1, tokens.get(2).getSymbol());
+        Assertions.assertEquals(SymbolTable.END, tokens.get(7).getKeyword());
+
+        TokenBuffer buffer = new Lexer("DO x x").lexBuffer();
+        Assertions.assertEquals(SymbolTable.DO, buffer.getKeyword(0));
+        Assertions.assertEquals(buffer.getSymbol(1), buffer.getSymbol(2));
+        Assertions.assertEquals("x", buffer.getSymbols().getName(buffer.getSymbol(1)));
+    }
+
+    @Test
+    void testKinds() {
+        TokenBuffer tokens = new Lexer("LET x <= 1.5 != \"s\" AND; ! END").lexBuffer();
+        int[] expected = {TokenKind.LET, TokenKind.IDENTIFIER, TokenKind.LESS_EQUAL, TokenKind.DECIMAL, TokenKind.NOT_EQUAL,
+                TokenKind.STRING, TokenKind.AND, TokenKind.SEMICOLON, TokenKind.OPERATOR, TokenKind.END};
+        Assertions.assertEquals(expected.length, tokens.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(expected[i], tokens.getKind(i));
+            Assertions.assertEquals(tokens.getType(i), TokenKind.getType(tokens.getKind(i)));
+        }
+        Assertions.assertEquals("<=", TokenKind.getName(tokens.getKind(2)));
+        Assertions.assertEquals(TokenKind.IF, TokenBuffer.of(new Lexer("IF").lex()).getKind(0));
+    }
+
+    @Test
+    void testLines() {
+        LineIndex lines = new LineIndex("one\ntwo\r\n\rthree");
+        Assertions.assertEquals(4, lines.getLineCount());
+        Assertions.assertEquals("1:1", lines.format(0));
+        Assertions.assertEquals("1:4", lines.format(3));
+        Assertions.assertEquals("2:1", lines.format(4));
+        Assertions.assertEquals("2:4", lines.format(7));
+        Assertions.assertEquals("3:1", lines.format(9));
+        Assertions.assertEquals("4:6", lines.format(15));
+        Assertions.assertEquals(10, lines.getLineStart(4));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lines.getLine(16));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lines.getLineStart(5));
+
+        TokenBuffer buffer = new Lexer("LET x\n  = 1;").lexBuffer();
+        Assertions.assertEquals(2, buffer.getLines().getLine(buffer.getIndex(2)));
+        Assertions.assertEquals(3, buffer.getLines().getColumn(buffer.getIndex(2)));
+        Assertions.assertSame(buffer.getLines(), buffer.getLines());
+
+        Lexer lexer = new Lexer("a\nb");
+        LineIndex first = lexer.getLines();
+        Assertions.assertSame(first, lexer.getLines());
+        Assertions.assertEquals(1, lexer.reset("c").getLines().getLineCount());
+        Assertions.assertNotSame(first, lexer.getLines());
+    }
+
+    @Test
+    void testErrors() {
+        Lexer lexer = new Lexer("LET a = 'ab';\nLET b = \"unterminated\nLET c = \"\\q\" + '';\nd");
+        List<ParseException> errors = lexer.recordErrors();
+        List<Token> tokens = lexer.lex();
+        Assertions.assertEquals(Arrays.asList(10, 35, 45, 52), errors.stream().map(ParseException::getIndex).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList("Mismatched Single Quote", "Invalid Character", "Invalid Character", "Invalid Character"),
+                errors.stream().map(ParseException::getMessage).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList("LET", "a", "=", ";", "LET", "b", "=", "LET", "c", "=", "+", ";", "d"),
+                tokens.stream().map(Token::getLiteral).collect(Collectors.toList()));
+
+        ParseException error = Assertions.assertThrows(ParseException.class, () -> new Lexer("x = 'ab'; y = \"\n").lex());
+        Assertions.assertEquals(6, error.getIndex());
+    }
+
+    @Test
+    void testStreaming() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            input.append("LET x").append(i).append(" = \"str\\n\" + 1.5 <= \'c\';\n");
+        }
+        input.append('\"');
+        for (int i = 0; i < 20000; i++) {
+            input.append('a');
+        }
+        input.append('\"');
+        List<Token> actual = new ArrayList<>();
+        new Lexer(new StringReader(input.toString())).forEach(actual::add);
+        Assertions.assertEquals(new Lexer(input.toString()).lex(), actual);
+
+        //a buffer over a streamed input only holds the characters of the tokens it still has
+        Lexer lexer = new Lexer(new StringReader(input.toString()));
+        TokenBuffer window = lexer.newBuffer(16);
+        List<Token> windowed = new ArrayList<>();
+        while (lexer.next(window)) {
+            windowed.add(window.get(window.size() - 1));
+            if (window.size() > 8) {
+                window.discard(window.size() - 1);
+            }
+            int held = 0;
+            for (int i = 0; i < window.size(); i++) {
+                held += window.getLength(i);
+            }
+            Assertions.assertEquals(held, window.getSource().length());
+        }
+        Assertions.assertEquals(actual, windowed);
+    }
+
+    @Test
+    void testStreamingException() {
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(new StringReader("one \"unterminated")).forEach(token -> {}));
+        Assertions.assertEquals(17, exception.getIndex());
+    }
+
+    @Test
+    void testMapped() throws IOException {
+        String input = "LET caf\u00e9 = \"\u20ac5 \ud83d\ude00\";\n\u00e9x + \'\u00fc\' <= 1.5;\n"
+                + "a_very_long_identifier-name12\u00e9 = 12345678901234567890.98765432109876543210;\n\t\t        \r\n";
+        Path path = Files.createTempFile("lexer", ".plc");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            List<Token> expected = new Lexer(input).lex();
+            Assertions.assertEquals(expected, new Lexer(path).lex());
+            Assertions.assertEquals(expected, new Lexer(path).lexBuffer().toList());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 7, 64, 4096})
+    void testParallel(int chunkSize) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            input.append("LET x").append(i).append(" = \"a <= \\\"b\\\" \' c\" + -1.25 != \'\\\'\';\n");
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assertions.assertEquals(new Lexer(input.toString()).lex(),
+                    new ParallelLexer(input.toString(), pool, chunkSize).lex());
+            input.append(" \"unterminated");
+            ParseException exception = Assertions.assertThrows(ParseException.class,
+                    () -> new ParallelLexer(input.toString(), pool, chunkSize).lex());
+            Assertions.assertEquals(input.length(), exception.getIndex());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testIncremental(String test, String input, int offset, int removed, String inserted) {
+        IncrementalLexer lexer = new IncrementalLexer(input);
+        String edited = input.substring(0, offset) + inserted + input.substring(offset + removed);
+        Assertions.assertEquals(new Lexer(edited).lex(), lexer.edit(offset, removed, inserted).toList());
+        Assertions.assertEquals(edited, lexer.getSource().toString());
+    }
+
+    @Test
+    void testIncrementalSymbols() {
+        IncrementalLexer lexer = new IncrementalLexer("LET x = n;");
+        SymbolTable symbols = lexer.getTokens().getSymbols();
+        for (int i = 0; i < 70000; i++) {
+            lexer.edit(8, lexer.getSource().length() - 9, "n" + i);
+        }
+        Assertions.assertNotSame(symbols, lexer.getTokens().getSymbols());
+        Assertions.assertTrue(lexer.getTokens().getSymbols().size() < 70000);
+        Assertions.assertEquals(new Lexer("LET x = n69999;").lex(), lexer.getTokens().toList());
+    }
+
+    private static Stream<Arguments> testIncremental() {
+        String input = "LET x = 1;\nDEF main() DO\n    print(\"a b\");\n    x = x + 10.5;\nEND";
+        return Stream.of(
+                Arguments.of("Extend Identifier", input, 5, 0, "yz"),
+                Arguments.of("Split Identifier", input, 5, 0, " "),
+                Arguments.of("Join Tokens", input, 7, 1, ""),
+                Arguments.of("Extend Operator", input, 6, 0, "="),
+                Arguments.of("Make Decimal", input, 9, 0, ".5"),
+                Arguments.of("Split String", "print(\"a b\");", 8, 0, "\", x, \""),
+                Arguments.of("Join Strings", "print(\"a\", x, \" b\");", 8, 7, ""),
+                Arguments.of("Append", input, input.length(), 0, " x"),
+                Arguments.of("Prepend", input, 0, 0, "LET y;"),
+                Arguments.of("Replace All", input, 0, input.length(), "a b")
+        );
+    }
+
     private static void test(String input, Token.Type expected, boolean success) {
         try {
             if (success) {
@@ -198,6 +455,7 @@ public class LexerTests {
         try {
             if (success) {
                 Assertions.assertEquals(expected, new Lexer(input).lex());
+                Assertions.assertEquals(expected, new Lexer(input).lexBuffer().toList());
             } else {
                 Assertions.assertNotEquals(expected, new Lexer(input).lex());
             }
@@ -0,0 +1,96 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Maps character indices of a source, such as those of tokens and {@link
+ * ParseException}s, to lines and columns. Both are numbered from 1, and a line
+ * ends at {@code \n}, {@code \r\n} or a lone {@code \r}.
+ *
+ * The offsets of the line starts are only found the first time a position is
+ * looked up, so lexing never pays for counting lines. After that, a lookup is
+ * a binary search over the line starts. The starts are published in a single
+ * volatile write, so an index may be shared between threads.
+ */
+public final class LineIndex {
+
+    private final CharSequence source;
+    private volatile int[] starts = null;
+
+    public LineIndex(CharSequence source) {
+        this.source = source;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int getLineCount() {
+        return build().length;
+    }
+
+    /**
+     * Returns the line of the character at the index. The length of the source
+     * is allowed too, for errors at the end of the input.
+     */
+    public int getLine(int index) {
+        return find(index) + 1;
+    }
+
+    public int getColumn(int index) {
+        int line = find(index);
+        return index - build()[line] + 1;
+    }
+
+    /**
+     * Returns the index of the first character of the line.
+     */
+    public int getLineStart(int line) {
+        int[] starts = build();
+        if (line < 1 || line > starts.length) {
+            throw new IndexOutOfBoundsException("Line " + line + " out of bounds for " + starts.length + " lines");
+        }
+        return starts[line - 1];
+    }
+
+    /**
+     * Returns the position of the index as {@code line:column}.
+     */
+    public String format(int index) {
+        int line = find(index);
+        return (line + 1) + ":" + (index - build()[line] + 1);
+    }
+
+    //returns the zero based line containing the index
+    private int find(int index) {
+        if (index < 0 || index > source.length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + source.length());
+        }
+        int line = Arrays.binarySearch(build(), index);
+        return line >= 0 ? line : -line - 2;
+    }
+
+    //returns the line starts, finding them on first use; threads racing to do so each build an equal array
+    private int[] build() {
+        int[] built = this.starts;
+        if (built != null) {
+            return built;
+        }
+        int[] starts = new int[16];
+        int lines = 1;
+        int length = source.length();
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == length || source.charAt(i + 1) != '\n'))) {
+                if (lines == starts.length) {
+                    starts = Arrays.copyOf(starts, lines * 2);
+                }
+                starts[lines++] = i + 1;
+            }
+        }
+        built = Arrays.copyOf(starts, lines);
+        this.starts = built;
+        return built;
+    }
+
+}
@@ -0,0 +1,88 @@
+package plc.project;
+
+/**
+ * Decodes the escapes in character and string literals in a single pass, from
+ * the text the tokens were lexed from. The escapes it knows are the ones the
+ * lexer accepts, which are defined here for both.
+ *
+ * A literal without escapes is copied as is. Otherwise it is decoded into a
+ * builder kept by the decoder, so one decoder should be reused for all the
+ * literals of a parse. A decoder must not be shared between threads.
+ */
+public final class LiteralDecoder {
+
+    //characters that may follow a backslash, in literals and as trivia between tokens
+    static final String ESCAPES = "bnrt'\"\\";
+
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Returns the value of the string literal at {@code start}, which spans
+     * {@code length} characters including its quotes.
+     */
+    public String decodeString(CharSequence source, int start, int length) {
+        int from = start + 1;
+        int to = start + length - 1;
+        int escape = indexOf(source, '\\', from, to);
+        if (escape < 0) {
+            return source.subSequence(from, to).toString();
+        }
+        builder.setLength(0);
+        builder.append(source, from, escape);
+        for (int i = escape; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '\\' && i + 1 < to && isEscape(source.charAt(i + 1))) {
+                builder.append(unescape(source.charAt(++i)));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the value of the character literal at {@code start}, which spans
+     * {@code length} characters including its quotes.
+     */
+    public char decodeCharacter(CharSequence source, int start, int length) {
+        char c = source.charAt(start + 1);
+        return c == '\\' && length > 3 && isEscape(source.charAt(start + 2)) ? unescape(source.charAt(start + 2)) : c;
+    }
+
+    /**
+     * Returns true if a backslash followed by the character is an escape.
+     * Anything else is left as it is, backslash included.
+     */
+    public static boolean isEscape(char c) {
+        return ESCAPES.indexOf(c) >= 0;
+    }
+
+    /**
+     * Returns the character an escape stands for, given the character after
+     * the backslash.
+     */
+    public static char unescape(char c) {
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return c;
+        }
+    }
+
+    private static int indexOf(CharSequence source, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
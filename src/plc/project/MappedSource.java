@@ -0,0 +1,234 @@
+package plc.project;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A UTF-8 source file mapped into memory and read as characters in place,
+ * without decoding it into a {@link String} first. Character indices are
+ * the same as in the decoded string, so tokens lexed from a mapped file have
+ * the same indices as tokens lexed from its contents.
+ *
+ * Plain ASCII is read byte for byte. The (rare) multi-byte sequences are
+ * recorded in a small table on construction, which maps character indices
+ * back to byte offsets for everything after them.
+ */
+public final class MappedSource implements CharSequence {
+
+    private static final long NON_ASCII = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    private final int length;
+
+    //character index and byte offset of every multi-byte sequence, in order
+    private int[] chars = new int[0];
+    private int[] offsets = new int[0];
+    private int sequences = 0;
+
+    //last sequence looked up, since the lexer mostly reads forward
+    private int cursor = -1;
+
+    public MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+        this.length = index();
+    }
+
+    public static MappedSource map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        int sequence = find(index);
+        if (sequence < 0) {
+            return (char) bytes.get(index);
+        }
+        int offset = offsets[sequence];
+        int into = index - chars[sequence];
+        int size = size(bytes.get(offset), offset);
+        if (into == 0 || (into == 1 && size == 4)) {
+            return decode(offset, size, into);
+        }
+        return (char) bytes.get(offset + size + into - (size == 4 ? 2 : 1));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        int first = find(start);
+        int last = find(end - 1);
+        if (first == last && (first < 0 || start > chars[first] + 1)) {
+            //no multi-byte character in the range, so its bytes are its characters
+            byte[] ascii = new byte[end - start];
+            ByteBuffer view = bytes.duplicate();
+            //through Buffer, since ByteBuffer only overrides position(int) from Java 9
+            ((Buffer) view).position(offset(start, first));
+            view.get(ascii);
+            return new String(ascii, StandardCharsets.ISO_8859_1);
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            builder.append(charAt(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the end of the run of the given {@link Runs} kind starting at
+     * {@code from}, scanning the ASCII bytes up to the next multi-byte
+     * sequence a word at a time. Multi-byte characters are never part of a
+     * run, so the scan stops there.
+     */
+    int run(int from, int to, int kind) {
+        if (from >= to) {
+            return from;
+        }
+        int sequence = find(from);
+        if (sequence >= 0 && from < chars[sequence] + (size(bytes.get(offsets[sequence]), offsets[sequence]) == 4 ? 2 : 1)) {
+            return from;
+        }
+        int stop = sequence + 1 < sequences ? Math.min(to, chars[sequence + 1]) : to;
+        int offset = offset(from, sequence);
+        return from + Runs.scan(bytes, offset, offset + stop - from, kind);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    /**
+     * Scans the bytes eight at a time for anything outside of ASCII, recording
+     * each multi-byte sequence, and returns the number of characters.
+     */
+    private int index() {
+        int limit = bytes.limit();
+        int count = 0;
+        int offset = 0;
+        while (offset < limit) {
+            if (offset + 8 <= limit && (bytes.getLong(offset) & NON_ASCII) == 0) {
+                offset += 8;
+                count += 8;
+            } else if (bytes.get(offset) >= 0) {
+                offset++;
+                count++;
+            } else {
+                if (sequences == chars.length) {
+                    chars = Arrays.copyOf(chars, Math.max(sequences * 2, 16));
+                    offsets = Arrays.copyOf(offsets, chars.length);
+                }
+                chars[sequences] = count;
+                offsets[sequences] = offset;
+                sequences++;
+                int size = size(bytes.get(offset), offset);
+                offset += size;
+                count += size == 4 ? 2 : 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the last multi-byte sequence starting at or before the given
+     * character index, or -1 if there is none.
+     */
+    private int find(int index) {
+        int sequence = cursor;
+        if (sequence >= 0 && chars[sequence] <= index && (sequence + 1 == sequences || chars[sequence + 1] > index)) {
+            return sequence;
+        }
+        int low = 0;
+        int high = sequences - 1;
+        sequence = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (chars[middle] <= index) {
+                sequence = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        cursor = sequence;
+        return sequence;
+    }
+
+    /**
+     * Returns the byte offset of an ASCII character, given the multi-byte
+     * sequence before it.
+     */
+    private int offset(int index, int sequence) {
+        if (sequence < 0) {
+            return index;
+        }
+        int size = size(bytes.get(offsets[sequence]), offsets[sequence]);
+        return offsets[sequence] + size + index - chars[sequence] - (size == 4 ? 2 : 1);
+    }
+
+    /**
+     * Returns the number of bytes in the sequence starting with the given
+     * lead byte. Invalid or truncated sequences count as a single byte, which
+     * decodes to the replacement character.
+     */
+    private int size(byte lead, int offset) {
+        int size;
+        if ((lead & 0xE0) == 0xC0) {
+            size = 2;
+        } else if ((lead & 0xF0) == 0xE0) {
+            size = 3;
+        } else if ((lead & 0xF8) == 0xF0) {
+            size = 4;
+        } else {
+            return 1;
+        }
+        return offset + size <= bytes.limit() ? size : 1;
+    }
+
+    /**
+     * Decodes the sequence at the offset, returning the high (part 0) or low
+     * (part 1) surrogate for characters outside of the basic plane.
+     */
+    private char decode(int offset, int size, int part) {
+        int lead = bytes.get(offset) & 0xFF;
+        int code;
+        switch (size) {
+            case 2:
+                code = lead & 0x1F;
+                break;
+            case 3:
+                code = lead & 0x0F;
+                break;
+            case 4:
+                code = lead & 0x07;
+                break;
+            default:
+                return '\uFFFD';
+        }
+        for (int i = 1; i < size; i++) {
+            code = (code << 6) | (bytes.get(offset + i) & 0x3F);
+        }
+        if (size == 4) {
+            return part == 0 ? Character.highSurrogate(code) : Character.lowSurrogate(code);
+        }
+        return (char) code;
+    }
+
+}
@@ -0,0 +1,124 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes a large input by splitting it into chunks which are lexed in parallel,
+ * each one speculatively assuming a token starts right at its first character.
+ *
+ * The chunks are then stitched together in order. Since lexing only depends on
+ * the position it starts from, a chunk's tokens are correct from the first one
+ * that also starts a token in the sequential lex. The stitching re-lexes from
+ * the end of the previous chunk (for example, past a string literal or a
+ * {@code <=} that straddles the split) until the two line up, and the result
+ * is identical to {@link Lexer#lexBuffer()}, including any exception thrown.
+ * Identifiers are only interned while stitching, so symbol ids are assigned
+ * in source order just as in a sequential lex.
+ */
+public final class ParallelLexer {
+
+    private final CharSequence input;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelLexer(CharSequence input) {
+        this(input, ForkJoinPool.commonPool(), 1 << 16);
+    }
+
+    public ParallelLexer(CharSequence input, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive, received " + chunkSize + ".");
+        }
+        this.input = input;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public List<Token> lex() {
+        return lexBuffer().toList();
+    }
+
+    public TokenBuffer lexBuffer() {
+        List<ForkJoinTask<Chunk>> chunks = new ArrayList<>();
+        for (int start = 0; start < input.length(); start += chunkSize) {
+            int from = start;
+            int until = (int) Math.min((long) start + chunkSize, input.length());
+            chunks.add(pool.submit(() -> lexChunk(from, until)));
+        }
+        TokenBuffer tokens = new TokenBuffer(input, Math.max(input.length() / 4, 16));
+        Lexer lexer = new Lexer(input);
+        try {
+            for (ForkJoinTask<Chunk> task : chunks) {
+                stitch(tokens, lexer, task.join());
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : chunks) {
+                task.cancel(false);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Re-lexes from where the tokens so far actually end until a token lines
+     * up with one of the chunk's, then takes the rest of the chunk as is.
+     */
+    private static void stitch(TokenBuffer tokens, Lexer lexer, Chunk chunk) {
+        if (lexer.position() >= chunk.until) {
+            return;
+        }
+        int speculative = 0;
+        boolean synced = lexer.position() == chunk.from;
+        while (!synced && lexer.position() < chunk.until && lexer.next(tokens)) {
+            int start = tokens.getIndex(tokens.size() - 1);
+            while (speculative < chunk.tokens.size() && chunk.tokens.getIndex(speculative) < start) {
+                speculative++;
+            }
+            if (speculative < chunk.tokens.size() && chunk.tokens.getIndex(speculative) == start) {
+                speculative++;
+                synced = true;
+            }
+        }
+        if (synced) {
+            tokens.addAll(chunk.tokens, speculative, chunk.tokens.size(), 0);
+            if (chunk.error != null) {
+                throw chunk.error;
+            }
+            lexer.seek(chunk.end);
+        }
+    }
+
+    //lexes the tokens starting within the chunk, assuming the first one starts at its beginning
+    private Chunk lexChunk(int from, int until) {
+        Chunk chunk = new Chunk(from, until, new TokenBuffer(input, Math.max((until - from) / 4, 16), null));
+        Lexer lexer = new Lexer(input);
+        lexer.seek(from);
+        try {
+            while (lexer.position() < until && lexer.next(chunk.tokens));
+        } catch (ParseException e) {
+            chunk.error = e;
+        }
+        chunk.end = lexer.position();
+        return chunk;
+    }
+
+    private static final class Chunk {
+
+        private final int from;
+        private final int until;
+        private final TokenBuffer tokens;
+        private int end;
+        private ParseException error = null;
+
+        private Chunk(int from, int until, TokenBuffer tokens) {
+            this.from = from;
+            this.until = until;
+            this.tokens = tokens;
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a source with many methods by parsing their bodies in parallel.
+ *
+ * A first sequential pass parses the fields and method signatures with {@link
+ * Parser#lazyMethods()}, which only scans each body for its matching {@code
+ * END}. The bodies are then parsed in batches on a pool and the methods are
+ * assembled in source order. If anything fails, including a body whose parse
+ * does not end at the {@code END} the scan found, the whole source is parsed
+ * again sequentially, so the result is identical to {@link
+ * Parser#parseSource()}, including any exception thrown.
+ */
+public final class ParallelParser {
+
+    private final TokenBuffer tokens;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public ParallelParser(TokenBuffer tokens) {
+        this(tokens, ForkJoinPool.commonPool(), 16);
+    }
+
+    public ParallelParser(List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    /**
+     * Creates a parser that hands the pool {@code batchSize} method bodies per
+     * task, so small methods are not each worth a task of their own.
+     */
+    public ParallelParser(TokenBuffer tokens, ForkJoinPool pool, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, received " + batchSize + ".");
+        }
+        this.tokens = tokens;
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    public Ast.Source parseSource() throws ParseException {
+        List<ForkJoinTask<List<Ast.Method>>> batches = new ArrayList<>();
+        try {
+            Ast.Source scanned = new Parser(tokens).lazyMethods().parseSource();
+            List<Ast.Method> methods = scanned.getMethods();
+            for (int start = 0; start < methods.size(); start += batchSize) {
+                List<Ast.Method> batch = methods.subList(start, Math.min(start + batchSize, methods.size()));
+                batches.add(pool.submit(() -> parseBodies(batch)));
+            }
+            List<Ast.Method> parsed = new ArrayList<>(methods.size());
+            for (ForkJoinTask<List<Ast.Method>> task : batches) {
+                parsed.addAll(task.join());
+            }
+            return new Ast.Source(scanned.getFields(), parsed);
+        } catch (RuntimeException e) {
+            //the sequential parse decides which error is reported first, or that there is none
+            return new Parser(tokens).parseSource();
+        } finally {
+            for (ForkJoinTask<List<Ast.Method>> task : batches) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    //parses the bodies of lazily parsed methods, replacing each with a method holding a plain list
+    private static List<Ast.Method> parseBodies(List<Ast.Method> methods) {
+        List<Ast.Method> parsed = new ArrayList<>(methods.size());
+        for (Ast.Method method : methods) {
+            parsed.add(new Ast.Method(method.getName(), method.getParameters(), method.getParameterTypeNames(),
+                    method.getReturnTypeName(), new ArrayList<>(method.getStatements())));
+        }
+        return parsed;
+    }
+
+}
@@ -2,6 +2,8 @@ package plc.project;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
@@ -12,8 +14,10 @@ import java.util.Optional;
  * Tree (AST).
  *
  * The parser has a similar architecture to the lexer, just with {@link Token}s
- * instead of characters. As before, {@link #peek(Object...)} and {@link
- * #match(Object...)} are helpers to make the implementation easier.
+ * instead of characters. As before, {@link #peek(int)} and {@link
+ * #match(int)} are helpers to make the implementation easier, comparing the
+ * next token's {@link TokenKind} (or, with {@link #peek(Token.Type)}, its
+ * type) instead of matching a regex.
  *
  * This type of parser is called <em>recursive descent</em>. Each rule in our
  * grammar will have it's own function, and reference to other rules correspond
@@ -21,10 +25,83 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    //precedence levels of the binary operators, from loosest to tightest
+    private static final int LOGICAL = 1;
+    private static final int EQUALITY = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    //precedence of the binary operator of each token kind, or 0 for kinds that are not one
+    private static final int[] PRECEDENCES = new int[TokenKind.KINDS];
+
+    static {
+        PRECEDENCES[TokenKind.AND] = LOGICAL;
+        PRECEDENCES[TokenKind.OR] = LOGICAL;
+        for (int kind : new int[] {TokenKind.LESS, TokenKind.LESS_EQUAL, TokenKind.GREATER, TokenKind.GREATER_EQUAL, TokenKind.EQUAL_EQUAL, TokenKind.NOT_EQUAL}) {
+            PRECEDENCES[kind] = EQUALITY;
+        }
+        PRECEDENCES[TokenKind.PLUS] = ADDITIVE;
+        PRECEDENCES[TokenKind.MINUS] = ADDITIVE;
+        PRECEDENCES[TokenKind.STAR] = MULTIPLICATIVE;
+        PRECEDENCES[TokenKind.SLASH] = MULTIPLICATIVE;
+    }
+
     private final TokenStream tokens;
+    private boolean lazy = false;
+    private List<ParseException> errors = null;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this(TokenBuffer.of(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new TokenStream(tokens, null);
+    }
+
+    /**
+     * Creates a parser pulling tokens from the source as it goes, such as a
+     * {@link Lexer}, so lexing and parsing run in a single pass. Only a small
+     * window of tokens around the current one is kept in memory. A lexer
+     * reading from a {@link java.io.Reader} or channel copies the characters
+     * of the tokens in the window, so the input itself is never held in
+     * memory either.
+     */
+    public Parser(TokenSource source) {
+        this.tokens = new TokenStream(source.newBuffer(TokenStream.WINDOW * 2), source);
+    }
+
+    /**
+     * Makes the parser skip over the bodies of methods, only parsing the
+     * statements of a method the first time they are accessed, such as when
+     * the method is analyzed or called. Syntax errors in a body are thrown
+     * from that first access instead of from {@link #parseSource()}.
+     *
+     * The bodies are parsed from this parser's tokens later on, so the tokens
+     * must all be in memory rather than pulled from a {@link TokenSource}.
+     */
+    public Parser lazyMethods() {
+        if (tokens.source != null) {
+            throw new IllegalStateException("Tokens pulled from a source cannot be parsed lazily.");
+        }
+        lazy = true;
+        return this;
+    }
+
+    /**
+     * Makes the parser keep going after a syntax error, for checking a whole
+     * file in one pass. Each error is recorded in the returned list. A
+     * statement that fails becomes an {@link Ast.Stmt.Error}, and the parser
+     * continues after the next {@code ;}, or before the next {@code END},
+     * {@code ELSE}, {@code DEF} or {@code LET}. A field or method whose
+     * declaration fails is left out, and the parser continues with the next
+     * one. Tokens between declarations that start neither a field nor a
+     * method are recorded as one error and skipped up to the next {@code LET}
+     * or {@code DEF}. The bodies of lazily parsed methods still throw their
+     * errors.
+     */
+    public List<ParseException> recordErrors() {
+        errors = new ArrayList<>();
+        return errors;
     }
 
     /**
@@ -32,15 +109,37 @@ public final class Parser {
      */
     public Ast.Source parseSource() throws ParseException {
         Ast.Source ast = new Ast.Source(new ArrayList<Ast.Field>(), new ArrayList<Ast.Method>());
-        while(peek("LET") || peek("DEF")){
-            if(match("LET")) {
-                ast.getFields().add(parseField());
-            }
-            else{
-                match("DEF");
-                ast.getMethods().add(parseMethod());
+        while (tokens.has(0)) {
+            switch (tokens.kind(0)) {
+                case TokenKind.LET:
+                    tokens.advance();
+                    try {
+                        ast.getFields().add(parseField());
+                    } catch (ParseException e) {
+                        recover(e, false);
+                    }
+                    break;
+                case TokenKind.DEF:
+                    tokens.advance();
+                    try {
+                        ast.getMethods().add(parseMethod());
+                    } catch (ParseException e) {
+                        recover(e, true);
+                    }
+                    break;
+                default:
+                    if (errors == null) {
+                        tokens.drain();
+                        return ast;
+                    }
+                    //a stray token between declarations, so skip to the next one
+                    errors.add(new ParseException("Expected 'LET' or 'DEF'", tokens.index(0)));
+                    do {
+                        tokens.advance();
+                    } while (tokens.has(0) && tokens.kind(0) != TokenKind.LET && tokens.kind(0) != TokenKind.DEF);
             }
         }
+        tokens.drain();
         return ast;
     }
 
@@ -49,18 +148,19 @@ public final class Parser {
      * next tokens start a field, aka {@code LET}.
      */
     public Ast.Field parseField() throws ParseException {
-        String name = tokens.get(0).getLiteral();
+        if (!tokens.has(0)) throw new ParseException("Expected identifier",tokens.index(0));
+        String name = tokens.literal(0);
         tokens.advance();
         String typename = "Any";
-        if (match(":")){
-            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.get(0).getIndex());
-            typename = (tokens.get(-1).getLiteral());
+        if (match(TokenKind.COLON)){
+            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.index(0));
+            typename = (tokens.literal(-1));
         }
         Optional<Ast.Expr> value;
-        if(match("="))
+        if(match(TokenKind.EQUAL))
             value = Optional.of(parseExpression());
         else value = Optional.empty();
-        if (tokens.has(1)) match(";");
+        if (tokens.has(1)) match(TokenKind.SEMICOLON);
         return new Ast.Field(name,typename,value);
     }
 
@@ -70,36 +170,45 @@ public final class Parser {
      */
     public Ast.Method parseMethod() throws ParseException {
         if (!match(Token.Type.IDENTIFIER)){
-            throw new ParseException("Expected identifier",tokens.get(0).getIndex());
+            throw new ParseException("Expected identifier",tokens.index(0));
         }
-        String name = tokens.get(-1).getLiteral();
-        if(!match("(")){
-            throw new ParseException("Expected '('",tokens.get(0).getIndex());
+        String name = tokens.literal(-1);
+        if(!match(TokenKind.LEFT_PAREN)){
+            throw new ParseException("Expected '('",tokens.index(0));
         }
         ArrayList<String> params = new ArrayList<String>();
         ArrayList<String> typeName = new ArrayList<String>();
         if (match(Token.Type.IDENTIFIER)){
-            params.add(tokens.get(-1).getLiteral());
-            while(match(",") && match(Token.Type.IDENTIFIER)){
-                params.add(tokens.get(-1).getLiteral());
-                match(":");
-                typeName.add(tokens.get(0).getLiteral());
+            params.add(tokens.literal(-1));
+            while(match(TokenKind.COMMA) && match(Token.Type.IDENTIFIER)){
+                params.add(tokens.literal(-1));
+                match(TokenKind.COLON);
+                if (!tokens.has(0)) throw new ParseException("Expected identifier",tokens.index(0));
+                typeName.add(tokens.literal(0));
                 tokens.advance();
             }
         }
-        if(!match(")")){
-            throw new ParseException("Expected ')'",tokens.get(0).getIndex());
+        if(!match(TokenKind.RIGHT_PAREN)){
+            throw new ParseException("Expected ')'",tokens.index(0));
         }
         Optional<String> typename = Optional.empty();
-        if (match(":")){
-            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.get(0).getIndex());
-            typename = Optional.of(tokens.get(-1).getLiteral());
+        if (match(TokenKind.COLON)){
+            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.index(0));
+            typename = Optional.of(tokens.literal(-1));
+        }
+        if(!match(TokenKind.DO)) throw new ParseException("Expected 'DO'",tokens.index(0));
+        if (lazy) {
+            int start = tokens.index;
+            skipBody();
+            List<Ast.Stmt> dos = new LazyStatements(tokens.tokens, start, tokens.index);
+            tokens.advance();
+            return new Ast.Method(name,params,typeName,typename,dos);
         }
-        if(!match("DO")) throw new ParseException("Expected 'DO'",tokens.get(0).getIndex());
         ArrayList<Ast.Stmt> dos = new ArrayList<Ast.Stmt>();
-        while(!peek("END")) {
-            dos.add(parseStatement());
+        while(!atBlockEnd()) {
+            dos.add(parseBlockStatement());
         }
+        matchEnd();
         return new Ast.Method(name,params,typeName,typename,dos);
     }
 
@@ -109,34 +218,30 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Stmt parseStatement() throws ParseException {
-        if (peek("LET")){
-            return parseDeclarationStatement();
-        }
-        else if (peek("IF")){
-            return parseIfStatement();
-        }
-        else if (peek("FOR")){
-            return parseForStatement();
-        }
-        else if (peek("WHILE")){
-            return parseWhileStatement();
-        }
-        else if (peek("RETURN")){
-            return parseReturnStatement();
-        }
-        else {
-            Ast.Expr expr = parseExpression();
-            if(match("=")){ //assignment
-                Ast.Expr expr2 = parseExpression();
-                if (!match(";")){
-                    throw new ParseException("Expected ';'",tokens.get(0).getIndex());
+        switch (tokens.has(0) ? tokens.kind(0) : -1) {
+            case TokenKind.LET:
+                return parseDeclarationStatement();
+            case TokenKind.IF:
+                return parseIfStatement();
+            case TokenKind.FOR:
+                return parseForStatement();
+            case TokenKind.WHILE:
+                return parseWhileStatement();
+            case TokenKind.RETURN:
+                return parseReturnStatement();
+            default:
+                Ast.Expr expr = parseExpression();
+                if(match(TokenKind.EQUAL)){ //assignment
+                    Ast.Expr expr2 = parseExpression();
+                    if (!match(TokenKind.SEMICOLON)){
+                        throw new ParseException("Expected ';'",tokens.index(0));
+                    }
+                    return new Ast.Stmt.Assignment(expr,expr2);
                 }
-                return new Ast.Stmt.Assignment(expr,expr2);
-            }
-            if (!match(";")){
-                throw new ParseException("Expected ';'",tokens.get(0).getIndex());
-            }
-            return new Ast.Stmt.Expression(expr);
+                if (!match(TokenKind.SEMICOLON)){
+                    throw new ParseException("Expected ';'",tokens.index(0));
+                }
+                return new Ast.Stmt.Expression(expr);
         }
     }
 
@@ -146,22 +251,22 @@ public final class Parser {
      * statement, aka {@code LET}.
      */
     public Ast.Stmt.Declaration parseDeclarationStatement() throws ParseException {
-        match("LET");
+        match(TokenKind.LET);
         if (!match(Token.Type.IDENTIFIER)) {
-            throw new ParseException("Expected identifier",tokens.get(0).getIndex()); //TODO index
+            throw new ParseException("Expected identifier",tokens.index(0)); //TODO index
         }
-        String name = tokens.get(-1).getLiteral();
+        String name = tokens.literal(-1);
         Optional<String> typename = Optional.empty();
-        if (match(":")){
-            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.get(0).getIndex());
-            typename = Optional.of(tokens.get(-1).getLiteral());
+        if (match(TokenKind.COLON)){
+            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.index(0));
+            typename = Optional.of(tokens.literal(-1));
         };
         Optional<Ast.Expr> value = Optional.empty();
-        if(match("=")){
+        if(match(TokenKind.EQUAL)){
             value = Optional.of(parseExpression());
         }
-        if (tokens.has(1) && !match(";")){
-            throw new ParseException("Expected ';'",tokens.get(0).getIndex()); //TODO change index?????
+        if (tokens.has(1) && !match(TokenKind.SEMICOLON)){
+            throw new ParseException("Expected ';'",tokens.index(0)); //TODO change index?????
         }
         return new Ast.Stmt.Declaration(name, typename,value);
     }
@@ -172,22 +277,20 @@ public final class Parser {
      * {@code IF}.
      */
     public Ast.Stmt.If parseIfStatement() throws ParseException {
-        match("IF");
+        match(TokenKind.IF);
         Ast.Expr expr = parseExpression();
-        if(!match("DO")) throw new ParseException("Expected 'DO'",tokens.get(0).getIndex());
+        if(!match(TokenKind.DO)) throw new ParseException("Expected 'DO'",tokens.index(0));
         ArrayList<Ast.Stmt> thens = new ArrayList<Ast.Stmt>();
         ArrayList<Ast.Stmt> elses = new ArrayList<Ast.Stmt>();
-        while(!peek("ELSE") && !peek("END")){
-            thens.add(parseStatement());
+        while(!peek(TokenKind.ELSE) && !atBlockEnd()){
+            thens.add(parseBlockStatement());
         }
-        if(match("ELSE")){
-            while(!peek("END")){
-                elses.add(parseStatement());
+        if(match(TokenKind.ELSE)){
+            while(!atBlockEnd()){
+                elses.add(parseBlockStatement());
             }
         }
-        if(!match("END")){
-            throw new ParseException("Expected 'END'",tokens.get(0).getIndex());
-        }
+        matchEnd();
         return new Ast.Stmt.If(expr,thens,elses);
     }
 
@@ -197,19 +300,18 @@ public final class Parser {
      * {@code FOR}.
      */
     public Ast.Stmt.For parseForStatement() throws ParseException {
-        match("FOR");
-        String name = tokens.get(0).getLiteral();
+        match(TokenKind.FOR);
+        if (!tokens.has(0)) throw new ParseException("Expected identifier",tokens.index(0));
+        String name = tokens.literal(0);
         tokens.advance();
-        if(!match("IN")) throw new ParseException("Expected 'IN'",tokens.get(0).getIndex());
+        if(!match(TokenKind.IN)) throw new ParseException("Expected 'IN'",tokens.index(0));
         Ast.Expr expr = parseExpression();
-        if(!match("DO")) throw new ParseException("Expected 'DO'",tokens.get(0).getIndex());
+        if(!match(TokenKind.DO)) throw new ParseException("Expected 'DO'",tokens.index(0));
         ArrayList<Ast.Stmt> dos = new ArrayList<Ast.Stmt>();
-        while(!peek("END")){
-            dos.add(parseStatement());
-        }
-        if(!match("END")){
-            throw new ParseException("Expected 'END'",tokens.get(0).getIndex());
+        while(!atBlockEnd()){
+            dos.add(parseBlockStatement());
         }
+        matchEnd();
         return new Ast.Stmt.For(name,expr,dos);
     }
 
@@ -219,13 +321,14 @@ public final class Parser {
      * {@code WHILE}.
      */
     public Ast.Stmt.While parseWhileStatement() throws ParseException {
-        match("WHILE");
+        match(TokenKind.WHILE);
         Ast.Expr expr = parseExpression();
-        if(!match("DO")) throw new ParseException("Expected 'DO'",tokens.get(0).getIndex());
+        if(!match(TokenKind.DO)) throw new ParseException("Expected 'DO'",tokens.index(0));
         ArrayList<Ast.Stmt> dos = new ArrayList<Ast.Stmt>();
-        while(!peek("END")){
-            dos.add(parseStatement());
+        while(!atBlockEnd()){
+            dos.add(parseBlockStatement());
         }
+        matchEnd();
         return new Ast.Stmt.While(expr,dos);
     }
 
@@ -235,10 +338,10 @@ public final class Parser {
      * {@code RETURN}.
      */
     public Ast.Stmt.Return parseReturnStatement() throws ParseException {
-        match("RETURN");
+        match(TokenKind.RETURN);
         Ast.Expr expr = parseExpression();
-        if (!match(";")){
-            throw new ParseException("Expected ';'",tokens.get(0).getIndex()); //TODO change index?????
+        if (!match(TokenKind.SEMICOLON)){
+            throw new ParseException("Expected ';'",tokens.index(0)); //TODO change index?????
         }
         return new Ast.Stmt.Return(expr);
     }
@@ -254,85 +357,98 @@ public final class Parser {
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expr parseLogicalExpression() throws ParseException {
-        Ast.Expr expr = parseEqualityExpression();
-        if(peek("AND")||peek("OR")){
-            if(match("AND")){
-                return new Ast.Expr.Binary("AND",expr,parseLogicalExpression());
-            }
-            if(match("OR")){
-                return new Ast.Expr.Binary("OR",expr,parseLogicalExpression());
-            }
-        }
-        return expr;
+        return parseBinaryExpression(LOGICAL);
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expr parseEqualityExpression() throws ParseException {
-        Ast.Expr expr = parseAdditiveExpression();
-        if(match("<")){
-            return new Ast.Expr.Binary("<",expr,parseEqualityExpression());
-        }
-        if(match("<=")){
-            return new Ast.Expr.Binary("<=",expr,parseEqualityExpression());
-        }
-        if(match(">")){
-            return new Ast.Expr.Binary(">",expr,parseEqualityExpression());
-        }
-        if(match(">=")){
-            return new Ast.Expr.Binary(">=",expr,parseEqualityExpression());
-        }
-        if(match("==")){
-            return new Ast.Expr.Binary("==",expr,parseEqualityExpression());
-        }
-        if(match("!=")){
-            return new Ast.Expr.Binary("!=",expr,parseEqualityExpression());
-        }
-        return expr;
+        return parseBinaryExpression(EQUALITY);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expr parseAdditiveExpression() throws ParseException {
-        Ast.Expr expr =  parseMultiplicativeExpression();
-        if(match("+")){
-            return new Ast.Expr.Binary("+",expr,parseAdditiveExpression());
-        }
-        if(match("-")){
-            return new Ast.Expr.Binary("-",expr,parseAdditiveExpression());
-        }
-        return expr;
+        return parseBinaryExpression(ADDITIVE);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expr parseMultiplicativeExpression() throws ParseException {
-        Ast.Expr expr =  parseSecondaryExpression();
-        if(match("*")){
-            return new Ast.Expr.Binary("*",expr,parseMultiplicativeExpression());
-        }
-        if(match("/")){
-            return new Ast.Expr.Binary("/",expr,parseMultiplicativeExpression());
+        return parseBinaryExpression(MULTIPLICATIVE);
+    }
+
+    /**
+     * Parses a chain of secondary expressions joined by binary operators of at
+     * least the given precedence, using precedence climbing. Operators of the
+     * same precedence associate to the left, so {@code a - b - c} is {@code (a
+     * - b) - c}.
+     *
+     * Operands and operators waiting for their right side are kept on explicit
+     * stacks rather than the call stack, so only parentheses nest calls and a
+     * flat chain of any length is parsed in constant stack depth.
+     */
+    private Ast.Expr parseBinaryExpression(int minimum) throws ParseException {
+        Ast.Expr expr = parseSecondaryExpression();
+        int operator = peekOperator(minimum);
+        if (operator < 0) {
+            return expr;
+        }
+        Ast.Expr[] operands = new Ast.Expr[8];
+        int[] operators = new int[8];
+        int size = 0;
+        do {
+            tokens.advance();
+            //finish every waiting operator that binds at least as tightly, which makes the tree left associative
+            while (size > 0 && PRECEDENCES[operators[size - 1]] >= PRECEDENCES[operator]) {
+                size--;
+                expr = new Ast.Expr.Binary(TokenKind.getName(operators[size]), operands[size], expr);
+            }
+            if (size == operands.length) {
+                operands = Arrays.copyOf(operands, size * 2);
+                operators = Arrays.copyOf(operators, size * 2);
+            }
+            operands[size] = expr;
+            operators[size] = operator;
+            size++;
+            expr = parseSecondaryExpression();
+            operator = peekOperator(minimum);
+        } while (operator >= 0);
+        while (size > 0) {
+            size--;
+            expr = new Ast.Expr.Binary(TokenKind.getName(operators[size]), operands[size], expr);
         }
         return expr;
     }
 
+    /**
+     * Returns the kind of the binary operator at the current token, or {@code
+     * -1} if there is none with at least the given precedence.
+     */
+    private int peekOperator(int minimum) {
+        if (!tokens.has(0)) {
+            return -1;
+        }
+        int kind = tokens.kind(0);
+        return PRECEDENCES[kind] >= minimum ? kind : -1;
+    }
+
     /**
      * Parses the {@code secondary-expression} rule.
      */
     public Ast.Expr parseSecondaryExpression() throws ParseException {
         Ast.Expr receiver = parsePrimaryExpression();
-        while (match(".")) {
-            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.get(0).getIndex());
-            String name = tokens.get(-1).getLiteral();
-            if(match("(")) {
+        while (match(TokenKind.DOT)) {
+            if(!match(Token.Type.IDENTIFIER)) throw new ParseException("Expected identifier",tokens.index(0));
+            String name = tokens.literal(-1);
+            if(match(TokenKind.LEFT_PAREN)) {
                 List<Ast.Expr> funkArgs = new ArrayList<Ast.Expr>();
-                while(!match(")")) {
+                while(!match(TokenKind.RIGHT_PAREN)) {
                     funkArgs.add(parseExpression());
-                    match(",");
+                    match(TokenKind.COMMA);
                 }
                 receiver = new Ast.Expr.Function(Optional.of(receiver), name, funkArgs);
             }
@@ -355,151 +471,345 @@ public final class Parser {
      *
      */
     public Ast.Expr parsePrimaryExpression() throws ParseException {
-        if(match("TRUE")){
-            return new Ast.Expr.Literal(true);
-        }
-        if(match("FALSE")){
-            return new Ast.Expr.Literal(false);
-        }
-        if(match("NIL")){
-            return new Ast.Expr.Literal(null);
-        }
-        if(match(Token.Type.INTEGER)){
-            return new Ast.Expr.Literal(new BigInteger(tokens.get(-1).getLiteral()));
-        }
-        if(match(Token.Type.DECIMAL)){
-            return new Ast.Expr.Literal(new BigDecimal(tokens.get(-1).getLiteral()));
-        }
-        if(match(Token.Type.STRING)){
-            String name = (tokens.get(-1).getLiteral());
-            name = name.substring(1,name.length()-1);
-            boolean changed = true;
-            while(changed && name.indexOf("\\")>-1) {
-                int length = name.length();
-                name = name.replace(('\\' + "b"), "\b");
-                name = name.replace(('\\' + "n"), "\n");
-                name = name.replace(('\\' + "r"), "\r");
-                name = name.replace(('\\' + "t"), "\t");
-                name = name.replace(('\\' + "\'"), "\'");
-                name = name.replace(('\\' + "\""), "\"");
-                name = name.replace(("\\\\"), "\\");
-                changed = name.length()==length;
-            }
-            return new Ast.Expr.Literal(name);
-        }
-        if(match(Token.Type.CHARACTER)){
-            String name = (tokens.get(-1).getLiteral());
-            name = name.substring(1,name.length()-1);
-            boolean changed = true;
-            while(changed && name.indexOf("\\")>-1) {
-                int length = name.length();
-                name = name.replace(('\\' + "b"), "\b");
-                name = name.replace(('\\' + "n"), "\n");
-                name = name.replace(('\\' + "r"), "\r");
-                name = name.replace(('\\' + "t"), "\t");
-                name = name.replace(('\\' + "\'"), "\'");
-                name = name.replace(('\\' + "\""), "\"");
-                name = name.replace(("\\\\"), "\\");
-                changed = name.length()==length;
+        int kind = tokens.has(0) ? tokens.kind(0) : -1;
+        switch (kind) {
+            case TokenKind.TRUE:
+                tokens.advance();
+                return new Ast.Expr.Literal(true);
+            case TokenKind.FALSE:
+                tokens.advance();
+                return new Ast.Expr.Literal(false);
+            case TokenKind.NIL:
+                tokens.advance();
+                return new Ast.Expr.Literal(null);
+            case TokenKind.INTEGER:
+                tokens.advance();
+                return new Ast.Expr.Literal(new BigInteger(tokens.literal(-1)));
+            case TokenKind.DECIMAL:
+                tokens.advance();
+                return new Ast.Expr.Literal(new BigDecimal(tokens.literal(-1)));
+            case TokenKind.STRING:
+                tokens.advance();
+                return new Ast.Expr.Literal(tokens.decodeString(-1));
+            case TokenKind.CHARACTER:
+                tokens.advance();
+                return new Ast.Expr.Literal(tokens.decodeCharacter(-1));
+            case TokenKind.LEFT_PAREN: {
+                tokens.advance();
+                Ast.Expr expr = parseExpression();
+                if (!match(TokenKind.RIGHT_PAREN)){
+                    throw new ParseException("Expected ')'",tokens.index(0)); //index?
+                }
+                return new Ast.Expr.Group(expr);
             }
-            return new Ast.Expr.Literal(name.charAt(0));
-        }
-        else if (match(Token.Type.IDENTIFIER)){
-            String name = tokens.get(-1).getLiteral();
-            //TODO function if nex is "("
-            if(match("(")) {
-                Ast.Expr.Function expr = new Ast.Expr.Function(Optional.empty(), name, new ArrayList<Ast.Expr>());;
-                if (!peek(")")){
-                    expr.getArguments().add(parseExpression());
-                    while (match(",")) {
+            default:
+                //keywords the grammar has no other use for here are still names
+                if (kind < 0 || TokenKind.getType(kind) != Token.Type.IDENTIFIER) {
+                    throw new ParseException("Invalid expression",tokens.index(0));
+                }
+                tokens.advance();
+                String name = tokens.literal(-1);
+                if(match(TokenKind.LEFT_PAREN)) {
+                    Ast.Expr.Function expr = new Ast.Expr.Function(Optional.empty(), name, new ArrayList<Ast.Expr>());
+                    if (!peek(TokenKind.RIGHT_PAREN)){
                         expr.getArguments().add(parseExpression());
+                        while (match(TokenKind.COMMA)) {
+                            expr.getArguments().add(parseExpression());
+                        }
                     }
+                    if (!match(TokenKind.RIGHT_PAREN)) {
+                        throw new ParseException("Expected ')'", tokens.index(0));
+                    }
+                    return expr;
                 }
-                if (!match(")")) {
-                    throw new ParseException("Expected ')'", tokens.index);
-                }
-                return expr;
+                return new Ast.Expr.Access(Optional.empty(), name);
+        }
+    }
+
+    /**
+     * Returns true if the statements of a block end here, which is at its
+     * {@code END} or the end of the input. When recording errors, a {@code
+     * DEF} also ends the block, since it must start the next method.
+     */
+    private boolean atBlockEnd() {
+        return !tokens.has(0) || peek(TokenKind.END) || (errors != null && peek(TokenKind.DEF));
+    }
+
+    /**
+     * Matches the {@code END} of a block. If it is missing, which can only be
+     * at the end of the input or at a {@code DEF}, the error is recorded and
+     * the block is kept as far as it got.
+     */
+    private void matchEnd() throws ParseException {
+        if (!match(TokenKind.END)) {
+            ParseException error = new ParseException("Expected 'END'", tokens.index(0));
+            if (errors == null) {
+                throw error;
             }
-            return new Ast.Expr.Access(Optional.empty(), name);
+            errors.add(error);
         }
-        else if (match("(")){
-            Ast.Expr expr = parseExpression();
-            if (!match(")")){
-                throw new ParseException("Expected ')'",tokens.get(0).getIndex()); //index?
+    }
+
+    /**
+     * Parses a statement inside a block, which becomes an {@link
+     * Ast.Stmt.Error} if it fails while recording errors.
+     */
+    private Ast.Stmt parseBlockStatement() throws ParseException {
+        if (errors == null) {
+            return parseStatement();
+        }
+        int start = tokens.index(0);
+        try {
+            return parseStatement();
+        } catch (ParseException e) {
+            recover(e, false);
+            //a statement that fails on its first token must still skip it, or it would fail forever
+            if (tokens.has(0) && tokens.index(0) == start) {
+                tokens.advance();
             }
-            return new Ast.Expr.Group(expr);
+            return new Ast.Stmt.Error(e.getMessage(), e.getIndex());
         }
-        else {
-            throw new ParseException("Invalid expression",tokens.get(0).getIndex());
+    }
+
+    /**
+     * Records the error, or throws it if errors are not being recorded, and
+     * skips to where parsing can continue. A failed method skips to the next
+     * {@code DEF}. Anything else skips past the next {@code ;}, or up to the
+     * next {@code END}, {@code ELSE}, {@code DEF} or {@code LET}, passing over
+     * whole blocks opened by a {@code DO} on the way.
+     */
+    private void recover(ParseException error, boolean method) throws ParseException {
+        if (errors == null) {
+            throw error;
+        }
+        errors.add(error);
+        int depth = 0;
+        while (tokens.has(0)) {
+            int kind = tokens.kind(0);
+            if (method) {
+                if (kind == TokenKind.DEF) {
+                    return;
+                }
+            } else if (kind == TokenKind.DO) {
+                depth++;
+            } else if (kind == TokenKind.END && depth > 0) {
+                depth--;
+            } else if (depth == 0 && kind == TokenKind.SEMICOLON) {
+                tokens.advance();
+                return;
+            } else if (depth == 0 && (kind == TokenKind.END || kind == TokenKind.ELSE || kind == TokenKind.DEF || kind == TokenKind.LET)) {
+                return;
+            }
+            tokens.advance();
         }
     }
 
     /**
-     * As in the lexer, returns {@code true} if the current sequence of tokens
-     * matches the given patterns. Unlike the lexer, the pattern is not a regex;
-     * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
-     *
-     * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * Advances to the {@code END} closing the current block, without parsing
+     * anything in between. Every nested {@code IF}, {@code FOR} and {@code
+     * WHILE} opens one more block with {@code DO} and closes it with {@code
+     * END}, so counting them is enough to find the matching one.
      */
-    private boolean peek(Object... patterns) {
-        for (int i = 0; i < patterns.length; i++){
-            if (!tokens.has(i)) {
-                return false;
+    private void skipBody() throws ParseException {
+        int depth = 1;
+        while (tokens.has(0)) {
+            int kind = tokens.kind(0);
+            if (kind == TokenKind.DO) {
+                depth++;
+            } else if (kind == TokenKind.END && --depth == 0) {
+                return;
             }
-            else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
-                    return false;
+            tokens.advance();
+        }
+        throw new ParseException("Expected 'END'", tokens.index(0));
+    }
+
+    /**
+     * The statements of a method body that are only parsed from the tokens
+     * between {@code start} and {@code end} the first time the list is
+     * accessed. After that, it behaves like the list an eager parse builds,
+     * and no longer holds on to the tokens.
+     */
+    private static final class LazyStatements extends AbstractList<Ast.Stmt> {
+
+        //cleared once the statements are parsed, so the tokens can be collected with the rest of the buffer
+        private TokenBuffer tokens;
+        private final int start;
+        private final int end;
+        private volatile List<Ast.Stmt> statements = null;
+
+        private LazyStatements(TokenBuffer tokens, int start, int end) {
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+        }
+
+        private List<Ast.Stmt> statements() {
+            List<Ast.Stmt> statements = this.statements;
+            if (statements == null) {
+                synchronized (this) {
+                    statements = this.statements;
+                    if (statements == null) {
+                        statements = parse();
+                        this.statements = statements;
+                        tokens = null;
+                    }
                 }
             }
-            else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
-                    return false;
-                }
-            } else {
-                throw new AssertionError("Invalid pattern object: " + patterns[i].getClass());
+            return statements;
+        }
+
+        private List<Ast.Stmt> parse() throws ParseException {
+            Parser parser = new Parser(tokens);
+            parser.tokens.index = start;
+            List<Ast.Stmt> statements = new ArrayList<Ast.Stmt>();
+            while (!parser.peek(TokenKind.END)) {
+                statements.add(parser.parseStatement());
             }
+            if (parser.tokens.index != end) {
+                throw new ParseException("Expected 'END'", parser.tokens.index(0));
+            }
+            return statements;
+        }
+
+        @Override
+        public Ast.Stmt get(int index) {
+            return statements().get(index);
+        }
+
+        @Override
+        public int size() {
+            return statements().size();
+        }
+
+        @Override
+        public Ast.Stmt set(int index, Ast.Stmt statement) {
+            return statements().set(index, statement);
+        }
+
+        @Override
+        public void add(int index, Ast.Stmt statement) {
+            statements().add(index, statement);
         }
-        return true;
+
+        @Override
+        public Ast.Stmt remove(int index) {
+            return statements().remove(index);
+        }
+
     }
 
     /**
-     * As in the lexer, returns {@code true} if {@link #peek(Object...)} is true
-     * and advances the token stream.
+     * As in the lexer, returns {@code true} if the next token matches. The
+     * token is compared by its {@link TokenKind}, a single integer, so every
+     * keyword and operator of the grammar can be peeked without comparing
+     * literals or allocating anything.
      */
-    private boolean match(Object... patterns) {
-        boolean peek = peek(patterns);
+    private boolean peek(int kind) {
+        return tokens.has(0) && tokens.kind(0) == kind;
+    }
+
+    /**
+     * Returns {@code true} if the next token has the given type, for the
+     * identifiers and literals whose kind only says what type they are.
+     */
+    private boolean peek(Token.Type type) {
+        return tokens.has(0) && tokens.type(0) == type;
+    }
+
+    /**
+     * As in the lexer, returns {@code true} if {@link #peek(int)} is true and
+     * advances the token stream.
+     */
+    private boolean match(int kind) {
+        boolean peek = peek(kind);
         if (peek) {
-            for (int i = 0; i < patterns.length; i++) {
-                tokens.advance();
-            }
+            tokens.advance();
+        }
+        return peek;
+    }
+
+    private boolean match(Token.Type type) {
+        boolean peek = peek(type);
+        if (peek) {
+            tokens.advance();
         }
         return peek;
     }
 
     private static final class TokenStream {
 
-        private final List<Token> tokens;
+        //how many consumed tokens a windowed stream holds before dropping them
+        private static final int WINDOW = 64;
+
+        private final TokenBuffer tokens;
+        private final TokenSource source;
+        private final LiteralDecoder decoder = new LiteralDecoder();
         private int index = 0;
 
-        private TokenStream(List<Token> tokens) {
+        private TokenStream(TokenBuffer tokens, TokenSource source) {
             this.tokens = tokens;
+            this.source = source;
         }
 
         /**
-         * Returns true if there is a token at index + offset.
+         * Returns true if there is a token at index + offset, pulling tokens
+         * from the source until there is one or the source runs out.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            return index + offset < tokens.size() || fill(index + offset);
+        }
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public Token.Type type(int offset) {
+            return tokens.getType(at(offset));
         }
 
         /**
-         * Gets the token at index + offset.
+         * Gets the {@link TokenKind} of the token at index + offset.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        public int kind(int offset) {
+            return tokens.getKind(at(offset));
+        }
+
+        /**
+         * Gets the literal of the token at index + offset.
+         */
+        public String literal(int offset) {
+            return tokens.getLiteral(at(offset));
+        }
+
+        /**
+         * Decodes the string literal at index + offset straight from the
+         * text it was lexed from.
+         */
+        public String decodeString(int offset) {
+            int i = at(offset);
+            return decoder.decodeString(tokens.getSource(), tokens.getStart(i), tokens.getLength(i));
+        }
+
+        /**
+         * Decodes the character literal at index + offset straight from the
+         * text it was lexed from.
+         */
+        public char decodeCharacter(int offset) {
+            int i = at(offset);
+            return decoder.decodeCharacter(tokens.getSource(), tokens.getStart(i), tokens.getLength(i));
+        }
+
+        /**
+         * Gets the source index of the token at index + offset, or the index
+         * just past the last token if there is none, for errors at the end of
+         * the input.
+         */
+        public int index(int offset) {
+            if (!has(offset) && index + offset >= tokens.size()) {
+                int last = tokens.size() - 1;
+                return last >= 0 ? tokens.getIndex(last) + tokens.getLength(last) : 0;
+            }
+            return tokens.getIndex(at(offset));
         }
 
         /**
@@ -509,6 +819,50 @@ public final class Parser {
             index++;
         }
 
+        /**
+         * Pulls the rest of the tokens from the source, so a lexical error
+         * after the last token the parser looked at is still thrown, as it is
+         * when the whole input is lexed first. The tokens are not kept.
+         */
+        public void drain() {
+            if (source != null) {
+                do {
+                    index = tokens.size();
+                } while (fill(index));
+            }
+        }
+
+        /**
+         * Returns the position of the token at index + offset in the buffer,
+         * pulling it from the source first if needed.
+         */
+        private int at(int offset) {
+            has(offset);
+            return index + offset;
+        }
+
+        /**
+         * Pulls tokens from the source until the position is available. Only
+         * the previous token is ever looked back at, so everything before it
+         * is dropped once enough has been consumed.
+         */
+        private boolean fill(int position) {
+            if (source == null) {
+                return false;
+            }
+            if (index > WINDOW) {
+                tokens.discard(index - 1);
+                position -= index - 1;
+                index = 1;
+            }
+            while (position >= tokens.size()) {
+                if (!source.next(tokens)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
     }
 
 }
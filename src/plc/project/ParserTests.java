@@ -5,12 +5,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -76,6 +80,54 @@ final class ParserTests {
                                         new Ast.Stmt.Expression(new Ast.Expr.Access(Optional.empty(), "stmt"))
                                 )))
                         )
+                ),
+                Arguments.of("Multiple Methods",
+                        Arrays.asList(
+                                //DEF f() DO END DEF g() DO END
+                                new Token(Token.Type.IDENTIFIER, "DEF", 0),
+                                new Token(Token.Type.IDENTIFIER, "f", 4),
+                                new Token(Token.Type.OPERATOR, "(", 5),
+                                new Token(Token.Type.OPERATOR, ")", 6),
+                                new Token(Token.Type.IDENTIFIER, "DO", 8),
+                                new Token(Token.Type.IDENTIFIER, "END", 11),
+                                new Token(Token.Type.IDENTIFIER, "DEF", 15),
+                                new Token(Token.Type.IDENTIFIER, "g", 19),
+                                new Token(Token.Type.OPERATOR, "(", 20),
+                                new Token(Token.Type.OPERATOR, ")", 21),
+                                new Token(Token.Type.IDENTIFIER, "DO", 23),
+                                new Token(Token.Type.IDENTIFIER, "END", 26)
+                        ),
+                        new Ast.Source(
+                                Arrays.asList(),
+                                Arrays.asList(
+                                        new Ast.Method("f", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList()),
+                                        new Ast.Method("g", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList())
+                                )
+                        )
+                ),
+                Arguments.of("Statement After While",
+                        Arrays.asList(
+                                //DEF f() DO WHILE expr DO END stmt; END
+                                new Token(Token.Type.IDENTIFIER, "DEF", 0),
+                                new Token(Token.Type.IDENTIFIER, "f", 4),
+                                new Token(Token.Type.OPERATOR, "(", 5),
+                                new Token(Token.Type.OPERATOR, ")", 6),
+                                new Token(Token.Type.IDENTIFIER, "DO", 8),
+                                new Token(Token.Type.IDENTIFIER, "WHILE", 11),
+                                new Token(Token.Type.IDENTIFIER, "expr", 17),
+                                new Token(Token.Type.IDENTIFIER, "DO", 22),
+                                new Token(Token.Type.IDENTIFIER, "END", 25),
+                                new Token(Token.Type.IDENTIFIER, "stmt", 29),
+                                new Token(Token.Type.OPERATOR, ";", 33),
+                                new Token(Token.Type.IDENTIFIER, "END", 35)
+                        ),
+                        new Ast.Source(
+                                Arrays.asList(),
+                                Arrays.asList(new Ast.Method("f", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList(
+                                        new Ast.Stmt.While(new Ast.Expr.Access(Optional.empty(), "expr"), Arrays.asList()),
+                                        new Ast.Stmt.Expression(new Ast.Expr.Access(Optional.empty(), "stmt"))
+                                )))
+                        )
                 )
         );
     }
@@ -309,6 +361,14 @@ final class ParserTests {
                 Arguments.of("Escape Character",
                         Arrays.asList(new Token(Token.Type.STRING, "\"Hello,\\nWorld!\"", 0)),
                         new Ast.Expr.Literal("Hello,\nWorld!")
+                ),
+                Arguments.of("Escaped Backslash",
+                        Arrays.asList(new Token(Token.Type.STRING, "\"C:\\\\new\\t\\\"x\\\"\"", 0)),
+                        new Ast.Expr.Literal("C:\\new\t\"x\"")
+                ),
+                Arguments.of("Escaped Character",
+                        Arrays.asList(new Token(Token.Type.CHARACTER, "'\\''", 0)),
+                        new Ast.Expr.Literal('\'')
                 )
         );
     }
@@ -554,6 +614,387 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testFused(String test, String input) {
+        Ast.Source expected;
+        try {
+            expected = new Parser(new Lexer(input).lex()).parseSource();
+        } catch (ParseException e) {
+            ParseException fused = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(input)).parseSource());
+            Assertions.assertEquals(e.getIndex(), fused.getIndex());
+            ParseException streamed = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(new StringReader(input))).parseSource());
+            Assertions.assertEquals(e.getIndex(), streamed.getIndex());
+            return;
+        }
+        Assertions.assertEquals(expected, new Parser(new Lexer(input)).parseSource());
+        Assertions.assertEquals(expected, new Parser(new Lexer(new StringReader(input))).parseSource());
+    }
+
+    private static Stream<Arguments> testFused() {
+        StringBuilder methods = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            methods.append("DEF method").append(i).append("(): Integer DO\n")
+                    .append("    WHILE x < ").append(i).append(" DO x = x + 1; END\n")
+                    .append("    RETURN \"s\" + x.stringify();\nEND\n");
+        }
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Field", "LET name: Integer = 1;"),
+                Arguments.of("Methods", "LET x = 0;\n" + methods),
+                Arguments.of("Missing Parenthesis", methods + "DEF main(): Integer DO RETURN f(1; END"),
+                Arguments.of("Trailing Lexical Error", "LET x = 1; \"unterminated"),
+                Arguments.of("Lexical Error After Source", methods + "x = 1; 'ab'")
+        );
+    }
+
+    @Test
+    void testAssociativity() {
+        Ast.Expr expected = new Ast.Expr.Binary("OR",
+                new Ast.Expr.Binary("<",
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Binary("-",
+                                        new Ast.Expr.Access(Optional.empty(), "a"),
+                                        new Ast.Expr.Binary("*",
+                                                new Ast.Expr.Binary("/",
+                                                        new Ast.Expr.Access(Optional.empty(), "b"),
+                                                        new Ast.Expr.Access(Optional.empty(), "c")
+                                                ),
+                                                new Ast.Expr.Access(Optional.empty(), "d")
+                                        )
+                                ),
+                                new Ast.Expr.Access(Optional.empty(), "e")
+                        ),
+                        new Ast.Expr.Access(Optional.empty(), "f")
+                ),
+                new Ast.Expr.Access(Optional.empty(), "g")
+        );
+        Assertions.assertEquals(expected, new Parser(new Lexer("a - b / c * d + e < f OR g").lex()).parseExpression());
+
+        StringBuilder input = new StringBuilder("x0");
+        for (int i = 1; i < 200000; i++) {
+            input.append(i % 2 == 0 ? " + x" : " * x").append(i);
+        }
+        Ast.Expr expr = new Parser(new Lexer(input).lex()).parseExpression();
+        int depth = 0;
+        while (expr instanceof Ast.Expr.Binary) {
+            expr = ((Ast.Expr.Binary) expr).getLeft();
+            depth++;
+        }
+        Assertions.assertEquals(100000, depth);
+    }
+
+    @Test
+    void testLazy() {
+        String input = "LET x = 0;\n"
+                + "DEF f(): Integer DO IF x < 1 DO WHILE TRUE DO x = x + 1; END ELSE RETURN 2; END RETURN x; END\n"
+                + "DEF broken() DO print(1 +); END\n"
+                + "DEF g() DO FOR i IN list DO print(i); END END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).lazyMethods().parseSource();
+        Assertions.assertEquals(3, ast.getMethods().size());
+        Assertions.assertEquals("g", ast.getMethods().get(2).getName());
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> ast.getMethods().get(1).getStatements().size());
+        Assertions.assertEquals(input.indexOf("); END\nDEF g"), exception.getIndex());
+
+        String valid = input.replace("print(1 +);", "print(1);");
+        Assertions.assertEquals(new Parser(new Lexer(valid).lex()).parseSource(), new Parser(new Lexer(valid).lex()).lazyMethods().parseSource());
+        Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer("DEF f() DO IF x DO END").lex()).lazyMethods().parseSource());
+        Assertions.assertThrows(IllegalStateException.class, () -> new Parser(new Lexer(valid)).lazyMethods());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 64})
+    void testParallel(int batchSize) {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            input.append("LET x").append(i).append(" = ").append(i).append(";\n")
+                    .append("DEF method").append(i).append("(a, b: Integer): Integer DO\n")
+                    .append("    IF a < b DO WHILE a != b DO a = a + 1; END ELSE RETURN b; END\n")
+                    .append("    RETURN a * ").append(i).append(";\nEND\n");
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assertions.assertEquals(new Parser(new Lexer(input).lex()).parseSource(),
+                    new ParallelParser(new Lexer(input).lexBuffer(), pool, batchSize).parseSource());
+            String invalid = input.toString().replace("RETURN a * 50;", "RETURN a * ;");
+            ParseException expected = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(invalid).lex()).parseSource());
+            ParseException exception = Assertions.assertThrows(ParseException.class,
+                    () -> new ParallelParser(new Lexer(invalid).lexBuffer(), pool, batchSize).parseSource());
+            Assertions.assertEquals(expected.getIndex(), exception.getIndex());
+            String nested = "DEF f() DO x = END; END LET y = 1;";
+            Assertions.assertEquals(new Parser(new Lexer(nested).lex()).parseSource(),
+                    new ParallelParser(new Lexer(nested).lexBuffer(), pool, batchSize).parseSource());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRecovery() {
+        String input = "LET x = 1 +;\n"
+                + "DEF f() DO\n"
+                + "    print(1;\n"
+                + "    IF x DO y = ; END\n"
+                + "    RETURN 1;\n"
+                + "END\n"
+                + "DEF g() DO\n"
+                + "    z = 2;\n"
+                + "DEF h() DO END";
+        Parser parser = new Parser(new Lexer(input).lex());
+        List<ParseException> errors = parser.recordErrors();
+        Ast.Source ast = parser.parseSource();
+        Assertions.assertEquals(Arrays.asList(
+                input.indexOf(";"),
+                input.indexOf(";", input.indexOf("print")),
+                input.indexOf(";", input.indexOf("y =")),
+                input.indexOf("DEF h")
+        ), errors.stream().map(ParseException::getIndex).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList("Invalid expression", "Expected ')'", "Invalid expression", "Expected 'END'"),
+                errors.stream().map(ParseException::getMessage).collect(Collectors.toList()));
+
+        Assertions.assertEquals(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(
+                        new Ast.Method("f", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList(
+                                new Ast.Stmt.Error("Expected ')'", errors.get(1).getIndex()),
+                                new Ast.Stmt.If(
+                                        new Ast.Expr.Access(Optional.empty(), "x"),
+                                        Arrays.asList(new Ast.Stmt.Error("Invalid expression", errors.get(2).getIndex())),
+                                        Arrays.asList()
+                                ),
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+                        )),
+                        new Ast.Method("g", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList(
+                                new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "z"), new Ast.Expr.Literal(BigInteger.valueOf(2)))
+                        )),
+                        new Ast.Method("h", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList())
+                )
+        ), ast);
+
+        Assertions.assertEquals(new Ast.Stmt.Error("Expected ')'", errors.get(1).getIndex()).hashCode(),
+                ast.getMethods().get(0).getStatements().get(0).hashCode());
+
+        String stray = "LET x; foo; DEF f() DO END";
+        Parser strayParser = new Parser(new Lexer(stray).lex());
+        List<ParseException> strayErrors = strayParser.recordErrors();
+        Ast.Source strayAst = strayParser.parseSource();
+        Assertions.assertEquals(1, strayErrors.size());
+        Assertions.assertEquals(stray.indexOf("foo"), strayErrors.get(0).getIndex());
+        Assertions.assertEquals(new Ast.Source(
+                Arrays.asList(new Ast.Field("x", Optional.empty())),
+                Arrays.asList(new Ast.Method("f", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList()))
+        ), strayAst);
+
+        ParseException first = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(input).lex()).parseSource());
+        Assertions.assertEquals(errors.get(0).getIndex(), first.getIndex());
+        Assertions.assertThrows(ParseException.class, () -> new Analyzer(new Scope(null)).visit(ast.getMethods().get(0).getStatements().get(0)));
+    }
+
+    @Test
+    void testCache() {
+        SourceCache cache = new SourceCache(50);
+        String input = "LET x = 1;\nDEF main() DO print(x); END";
+        Ast.Source ast = cache.parse(input);
+        Assertions.assertEquals(new Parser(new Lexer(input).lex()).parseSource(), ast);
+        Assertions.assertEquals(ast, cache.parse(new StringBuilder(input)));
+        Assertions.assertEquals(cache.lex(input).toList(), cache.lex(input).toList());
+        Assertions.assertEquals(3, cache.getHits());
+        Assertions.assertEquals(input.length(), cache.weight());
+
+        cache.parse("LET y = 2;");
+        cache.parse("LET z = 3;");
+        Assertions.assertEquals(2, cache.size());
+        long misses = cache.getMisses();
+        Assertions.assertEquals(ast, cache.parse(input));
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+        Assertions.assertThrows(ParseException.class, () -> cache.parse("LET x = f(1;"));
+        Assertions.assertThrows(ParseException.class, () -> cache.parse("LET x = f(1;"));
+    }
+
+    @Test
+    void testCacheCopies() {
+        SourceCache cache = new SourceCache(100);
+        String input = "LET x: Integer = 1;\nDEF main(): Integer DO RETURN x; END";
+        Ast.Source first = cache.parse(input);
+        Ast.Source second = cache.parse(input);
+        Assertions.assertNotSame(first, second);
+        new Analyzer(new Scope(null)).visit(first);
+        Assertions.assertNotNull(first.getFields().get(0).getVariable());
+        Assertions.assertThrows(IllegalStateException.class, () -> second.getFields().get(0).getVariable());
+        Ast.Stmt.Return ret = (Ast.Stmt.Return) second.getMethods().get(0).getStatements().get(0);
+        Assertions.assertThrows(IllegalStateException.class, () -> ret.getValue().getType());
+
+        first.getMethods().clear();
+        Assertions.assertEquals(1, cache.parse(input).getMethods().size());
+        TokenBuffer tokens = cache.lex(input);
+        Assertions.assertNotSame(tokens, cache.lex(input));
+        new Lexer("other").lexBuffer(tokens);
+        Assertions.assertEquals(new Lexer(input).lex(), cache.lex(input).toList());
+    }
+
+    @Test
+    void testArena() {
+        String input = "LET x: Integer = 1;\nLET s = \"s\";\n"
+                + "DEF f(a, b: Integer): Integer DO\n"
+                + "    LET y = (a + b) * 2.5;\n"
+                + "    IF a < b AND TRUE DO x = obj.field; ELSE RETURN NIL; END\n"
+                + "    FOR i IN list DO print(i, 'c'); END\n"
+                + "    WHILE x != 0 DO x = x - 1; obj.method(); END\n"
+                + "    RETURN x;\n"
+                + "END\n"
+                + "DEF g() DO END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        AstArena arena = new AstArena();
+        int source = arena.add(ast);
+        Assertions.assertEquals(ast, arena.toAst(source));
+        Assertions.assertEquals(AstArena.SOURCE, arena.getKind(source));
+        Assertions.assertEquals(2, arena.getListSize(source, AstArena.FIELDS));
+
+        int method = arena.getListItem(source, AstArena.METHODS, 0);
+        Assertions.assertEquals("f", arena.getName(method));
+        Assertions.assertEquals("Integer", arena.getTypeName(method));
+        Assertions.assertEquals("b", arena.getString(arena.getListItem(method, AstArena.PARAMETERS, 1)));
+        Assertions.assertEquals(5, arena.getListSize(method, AstArena.STATEMENTS));
+        int loop = arena.getListItem(method, AstArena.STATEMENTS, 2);
+        Assertions.assertEquals(AstArena.FOR, arena.getKind(loop));
+        Assertions.assertEquals(Ast.FOR, ast.getMethods().get(0).getStatements().get(2).getKind());
+        Assertions.assertEquals("i", arena.getName(loop));
+        Assertions.assertNull(arena.getTypeName(arena.getListItem(source, AstArena.METHODS, 1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> arena.getCondition(method));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> arena.getListSize(loop, AstArena.ELSE));
+        Assertions.assertEquals(1, arena.getListSize(loop, AstArena.STATEMENTS));
+        Assertions.assertEquals(AstArena.EXPRESSION, arena.getKind(arena.getListItem(loop, AstArena.STATEMENTS, 0)));
+        int body = arena.getListItem(method, AstArena.STATEMENTS, 3);
+        Assertions.assertEquals(AstArena.WHILE, arena.getKind(body));
+        Assertions.assertEquals(2, arena.getListSize(body, AstArena.STATEMENTS));
+        Assertions.assertEquals(AstArena.ASSIGNMENT, arena.getKind(arena.getListItem(body, AstArena.STATEMENTS, 0)));
+        Assertions.assertEquals(1, arena.getListSize(arena.getListItem(method, AstArena.STATEMENTS, 1), AstArena.ELSE));
+
+        Assertions.assertEquals(arena.size(), (int) arena.visit(source, new ArenaCounter(arena)));
+        arena.trim();
+        Assertions.assertTrue(arena.getByteSize() <= 24L * arena.size(), arena.getByteSize() + " bytes");
+
+        StringBuilder chain = new StringBuilder("x0");
+        for (int i = 1; i < 100000; i++) {
+            chain.append(" + x").append(i);
+        }
+        Ast.Expr expr = new Parser(new Lexer(chain).lex()).parseExpression();
+        int node = arena.add(expr);
+        Ast.Expr decoded = (Ast.Expr) arena.toAst(node);
+        while (expr instanceof Ast.Expr.Binary) {
+            Assertions.assertEquals(((Ast.Expr.Binary) expr).getRight(), ((Ast.Expr.Binary) decoded).getRight());
+            expr = ((Ast.Expr.Binary) expr).getLeft();
+            decoded = ((Ast.Expr.Binary) decoded).getLeft();
+        }
+        Assertions.assertEquals(expr, decoded);
+    }
+
+    /**
+     * Counts the nodes under a node of an arena, itself included.
+     */
+    private static final class ArenaCounter implements AstArena.Visitor<Integer> {
+
+        private final AstArena arena;
+
+        private ArenaCounter(AstArena arena) {
+            this.arena = arena;
+        }
+
+        private int count(int node) {
+            return node == -1 ? 0 : arena.visit(node, this);
+        }
+
+        private int count(int node, int list) {
+            int count = 0;
+            int size = arena.getListSize(node, list);
+            for (int i = 0; i < size; i++) {
+                count += count(arena.getListItem(node, list, i));
+            }
+            return count;
+        }
+
+        @Override
+        public Integer visitSource(int node) {
+            return 1 + count(node, AstArena.FIELDS) + count(node, AstArena.METHODS);
+        }
+
+        @Override
+        public Integer visitField(int node) {
+            return 1 + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitMethod(int node) {
+            return 1 + count(node, AstArena.STATEMENTS);
+        }
+
+        @Override
+        public Integer visitExpression(int node) {
+            return 1 + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitDeclaration(int node) {
+            return 1 + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitAssignment(int node) {
+            return 1 + count(arena.getReceiver(node)) + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitIf(int node) {
+            return 1 + count(arena.getCondition(node)) + count(node, AstArena.THEN) + count(node, AstArena.ELSE);
+        }
+
+        @Override
+        public Integer visitFor(int node) {
+            return 1 + count(arena.getValue(node)) + count(node, AstArena.STATEMENTS);
+        }
+
+        @Override
+        public Integer visitWhile(int node) {
+            return 1 + count(arena.getCondition(node)) + count(node, AstArena.STATEMENTS);
+        }
+
+        @Override
+        public Integer visitReturn(int node) {
+            return 1 + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitError(int node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitLiteral(int node) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitGroup(int node) {
+            return 1 + count(arena.getValue(node));
+        }
+
+        @Override
+        public Integer visitBinary(int node) {
+            return 1 + count(arena.getLeft(node)) + count(arena.getRight(node));
+        }
+
+        @Override
+        public Integer visitAccess(int node) {
+            return 1 + count(arena.getReceiver(node));
+        }
+
+        @Override
+        public Integer visitFunction(int node) {
+            return 1 + count(arena.getReceiver(node)) + count(node, AstArena.ARGUMENTS);
+        }
+
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
@@ -0,0 +1,103 @@
+package plc.project;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the end of a run of identifier, digit or whitespace characters, which
+ * is most of the time the lexer spends on long names and numbers.
+ *
+ * Over a {@link MappedSource} the bytes are classified eight at a time with
+ * SIMD-within-a-register arithmetic on a {@code long}: every byte is ASCII
+ * (the high bit is clear), so adding a constant below {@code 0x80} to each
+ * byte never carries into the next one and range and equality checks become
+ * a handful of adds and masks for the whole word. Any other input falls back
+ * to a scalar loop.
+ */
+final class Runs {
+
+    static final int IDENTIFIER = 0;
+    static final int DIGIT = 1;
+    static final int WHITESPACE = 2;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH = 0x8080808080808080L;
+
+    private Runs() {}
+
+    /**
+     * Returns the index of the first character at or after {@code from} and
+     * before {@code to} that is not part of the run, or {@code to} if there is
+     * none.
+     */
+    static int scan(CharSequence input, int from, int to, int kind) {
+        if (input instanceof MappedSource) {
+            return ((MappedSource) input).run(from, to, kind);
+        }
+        int i = from;
+        while (i < to && matches(input.charAt(i), kind)) {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean matches(char c, int kind) {
+        switch (kind) {
+            case IDENTIFIER:
+                return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
+            case DIGIT:
+                return c >= '0' && c <= '9';
+            case WHITESPACE:
+                return c == ' ' || c == '\b' || c == '\n' || c == '\r' || c == '\t';
+            default:
+                throw new AssertionError("Invalid run kind: " + kind);
+        }
+    }
+
+    /**
+     * Returns the number of leading bytes in {@code [offset, limit)} that are
+     * part of the run. The bytes must be ASCII only up to the limit.
+     */
+    static int scan(ByteBuffer bytes, int offset, int limit, int kind) {
+        int i = offset;
+        while (i + 8 <= limit) {
+            long word = bytes.getLong(i);
+            long outside = ~members(word, kind) & HIGH;
+            if (outside != 0) {
+                //the buffer is big endian, so the first byte is the most significant
+                return i - offset + Long.numberOfLeadingZeros(outside) / 8;
+            }
+            i += 8;
+        }
+        while (i < limit && matches((char) bytes.get(i), kind)) {
+            i++;
+        }
+        return i - offset;
+    }
+
+    //sets the high bit of every byte of the (ASCII) word that is part of the run
+    private static long members(long word, int kind) {
+        switch (kind) {
+            case IDENTIFIER:
+                return range(word, 'a', 'z') | range(word, 'A', 'Z') | range(word, '0', '9') | equal(word, '_') | equal(word, '-');
+            case DIGIT:
+                return range(word, '0', '9');
+            case WHITESPACE:
+                return equal(word, ' ') | equal(word, '\b') | equal(word, '\n') | equal(word, '\r') | equal(word, '\t');
+            default:
+                throw new AssertionError("Invalid run kind: " + kind);
+        }
+    }
+
+    //high bit set where low <= byte <= high
+    private static long range(long word, char low, char high) {
+        long atLeastLow = word + ONES * (0x80 - low);
+        long aboveHigh = word + ONES * (0x7F - high);
+        return atLeastLow & ~aboveHigh & HIGH;
+    }
+
+    //high bit set where the byte equals c
+    private static long equal(long word, char c) {
+        return ~((word ^ ONES * c) + ONES * 0x7F) & HIGH;
+    }
+
+}
@@ -0,0 +1,261 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Caches the tokens and AST of sources by their content, so a program that is
+ * submitted again with the same text skips lexing and parsing entirely.
+ *
+ * Sources are looked up by a 64-bit hash of their characters, and a hit is
+ * only returned after comparing the text, so two sources with the same hash
+ * never share results. The cache holds at most a given number of source
+ * characters in total, evicting the least recently used sources first.
+ *
+ * The cached tokens and AST are never handed out. Every call returns a copy
+ * of its own, which the caller may modify or analyze without affecting other
+ * callers, and copying is still much cheaper than lexing and parsing again.
+ * All methods may be called from several threads.
+ */
+public final class SourceCache {
+
+    private final int capacity;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a cache holding sources of up to {@code capacity} characters in
+     * total. A source larger than that is lexed and parsed, but not cached.
+     */
+    public SourceCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the tokens of the source, lexing it only if it is not cached.
+     * The tokens have a symbol table of their own.
+     */
+    public TokenBuffer lex(CharSequence source) throws ParseException {
+        Entry entry = lookup(source);
+        TokenBuffer tokens = new TokenBuffer(entry.text, Math.max(entry.tokens.size(), 16), new SymbolTable());
+        tokens.addAll(entry.tokens, 0, entry.tokens.size(), 0);
+        return tokens;
+    }
+
+    /**
+     * Returns the AST of the source, lexing and parsing it only if it is not
+     * cached. A source that fails to parse is not cached, so the error is
+     * thrown again on every call.
+     */
+    public Ast.Source parse(CharSequence source) throws ParseException {
+        Entry entry = lookup(source);
+        Ast.Source ast = entry.ast;
+        if (ast == null) {
+            ast = new Parser(entry.tokens).parseSource();
+            synchronized (this) {
+                if (entry.ast == null) {
+                    entry.ast = ast;
+                }
+                ast = entry.ast;
+            }
+        }
+        return (Ast.Source) new Copier().visit(ast);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total number of characters of the cached sources.
+     */
+    public synchronized int weight() {
+        return weight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private Entry lookup(CharSequence source) {
+        long hash = hash(source);
+        synchronized (this) {
+            Entry entry = entries.get(hash);
+            if (entry != null && entry.text.contentEquals(source)) {
+                hits++;
+                return entry;
+            }
+            misses++;
+        }
+        String text = source.toString();
+        Entry entry = new Entry(text, new Lexer(text).lexBuffer());
+        if (text.length() > capacity) {
+            return entry;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(hash, entry);
+            if (previous != null) {
+                weight -= previous.text.length();
+            }
+            weight += text.length();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weight > capacity) {
+                weight -= eldest.next().text.length();
+                eldest.remove();
+            }
+        }
+        return entry;
+    }
+
+    //FNV-1a over the characters, which is fast and spreads similar sources apart
+    static long hash(CharSequence source) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash = (hash ^ source.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Copies a parsed tree, creating new nodes and lists. The operands of a
+     * chain of binary expressions are copied in a loop, so long chains do not
+     * recurse.
+     */
+    private static final class Copier implements Ast.Visitor<Ast> {
+
+        @Override
+        public Ast visit(Ast.Source ast) {
+            return new Ast.Source(copy(ast.getFields()), copy(ast.getMethods()));
+        }
+
+        @Override
+        public Ast visit(Ast.Field ast) {
+            return new Ast.Field(ast.getName(), ast.getTypeName(), copy(ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Method ast) {
+            return new Ast.Method(ast.getName(), new ArrayList<>(ast.getParameters()), new ArrayList<>(ast.getParameterTypeNames()),
+                    ast.getReturnTypeName(), copy(ast.getStatements()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Expression ast) {
+            return new Ast.Stmt.Expression(copy(ast.getExpression()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Declaration ast) {
+            return new Ast.Stmt.Declaration(ast.getName(), ast.getTypeName(), copy(ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            return new Ast.Stmt.Assignment(copy(ast.getReceiver()), copy(ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.If ast) {
+            return new Ast.Stmt.If(copy(ast.getCondition()), copy(ast.getThenStatements()), copy(ast.getElseStatements()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.For ast) {
+            return new Ast.Stmt.For(ast.getName(), copy(ast.getValue()), copy(ast.getStatements()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.While ast) {
+            return new Ast.Stmt.While(copy(ast.getCondition()), copy(ast.getStatements()));
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Return ast) {
+            return new Ast.Stmt.Return(copy(ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Literal ast) {
+            return new Ast.Expr.Literal(ast.getLiteral());
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Group ast) {
+            return new Ast.Expr.Group(copy(ast.getExpression()));
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Binary ast) {
+            List<Ast.Expr.Binary> chain = new ArrayList<>();
+            Ast.Expr expr = ast;
+            while (expr.getKind() == Ast.BINARY) {
+                chain.add((Ast.Expr.Binary) expr);
+                expr = ((Ast.Expr.Binary) expr).getLeft();
+            }
+            Ast.Expr left = copy(expr);
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                left = new Ast.Expr.Binary(chain.get(i).getOperator(), left, copy(chain.get(i).getRight()));
+            }
+            return left;
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Access ast) {
+            return new Ast.Expr.Access(copy(ast.getReceiver()), ast.getName());
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Function ast) {
+            return new Ast.Expr.Function(copy(ast.getReceiver()), ast.getName(), copy(ast.getArguments()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Ast> T copy(T ast) {
+            return (T) visit(ast);
+        }
+
+        private <T extends Ast> Optional<T> copy(Optional<T> ast) {
+            return ast.isPresent() ? Optional.of(copy(ast.get())) : Optional.empty();
+        }
+
+        private <T extends Ast> List<T> copy(List<T> asts) {
+            List<T> copies = new ArrayList<>(asts.size());
+            for (T ast : asts) {
+                copies.add(copy(ast));
+            }
+            return copies;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final String text;
+        private final TokenBuffer tokens;
+        private volatile Ast.Source ast = null;
+
+        private Entry(String text, TokenBuffer tokens) {
+            this.text = text;
+            this.tokens = tokens;
+        }
+
+    }
+
+}
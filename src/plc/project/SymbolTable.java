@@ -0,0 +1,157 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Interns identifier names, giving each distinct name a stable integer id and
+ * a single shared {@link String}. Keywords are always interned first, so the
+ * id of a keyword is one of the constants below and any id of at least
+ * {@link #KEYWORDS} is a plain identifier.
+ *
+ * Keywords are recognized with a perfect hash on the first character, last
+ * character and length, so classifying an identifier costs one table lookup
+ * and a comparison before the general table is probed.
+ */
+public final class SymbolTable {
+
+    public static final int LET = 0;
+    public static final int DEF = 1;
+    public static final int DO = 2;
+    public static final int END = 3;
+    public static final int IF = 4;
+    public static final int ELSE = 5;
+    public static final int FOR = 6;
+    public static final int IN = 7;
+    public static final int WHILE = 8;
+    public static final int RETURN = 9;
+    public static final int AND = 10;
+    public static final int OR = 11;
+    public static final int NIL = 12;
+    public static final int TRUE = 13;
+    public static final int FALSE = 14;
+    public static final int KEYWORDS = 15;
+
+    private static final String[] NAMES = {
+            "LET", "DEF", "DO", "END", "IF", "ELSE", "FOR", "IN",
+            "WHILE", "RETURN", "AND", "OR", "NIL", "TRUE", "FALSE"
+    };
+
+    //keyword id by perfect hash, or -1 for slots no keyword hashes to
+    private static final int[] PERFECT = new int[32];
+
+    static {
+        Arrays.fill(PERFECT, -1);
+        for (int i = 0; i < KEYWORDS; i++) {
+            int slot = perfectHash(NAMES[i], 0, NAMES[i].length());
+            if (PERFECT[slot] != -1) {
+                throw new AssertionError("Keywords " + NAMES[PERFECT[slot]] + " and " + NAMES[i] + " collide.");
+            }
+            PERFECT[slot] = i;
+        }
+    }
+
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    //open addressing table of id + 1, with 0 marking an empty slot
+    private int[] slots = new int[128];
+    private int size = 0;
+
+    public SymbolTable() {
+        for (String keyword : NAMES) {
+            insert(keyword, 0, keyword.length());
+        }
+    }
+
+    /**
+     * Returns the keyword id of the given characters, or -1 if they are not
+     * a keyword.
+     */
+    public static int keyword(CharSequence source, int start, int length) {
+        if (length < 2 || length > 6) {
+            return -1;
+        }
+        int keyword = PERFECT[perfectHash(source, start, length)];
+        return keyword != -1 && equals(NAMES[keyword], source, start, length) ? keyword : -1;
+    }
+
+    /**
+     * Returns the id of the name made of the given characters, adding it to
+     * the table if it is new.
+     */
+    public int intern(CharSequence source, int start, int length) {
+        int keyword = keyword(source, start, length);
+        return keyword != -1 ? keyword : insert(source, start, length);
+    }
+
+    public String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol " + id + " out of bounds for length " + size);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //looks the name up in the general table, adding it if it is not there yet
+    private int insert(CharSequence source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.charAt(start + i);
+        }
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && equals(names[id], source, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = source instanceof String && length == source.length() ? (String) source : source.subSequence(start, start + length).toString();
+        hashes[size] = hash;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int perfectHash(CharSequence source, int start, int length) {
+        return (2 * source.charAt(start) + 19 * source.charAt(start + length - 1) + length) & 31;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String name, CharSequence source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -14,11 +14,21 @@ public final class Token {
     private final Type type;
     private final String literal;
     private final int index;
+    private final int symbol;
 
     public Token(Type type, String literal, int index) {
+        this(type, literal, index, -1);
+    }
+
+    /**
+     * Creates a token with the id its literal was interned as in a {@link
+     * SymbolTable}, which is -1 for tokens that are not identifiers.
+     */
+    public Token(Type type, String literal, int index, int symbol) {
         this.type = type;
         this.literal = literal;
         this.index = index;
+        this.symbol = symbol;
     }
 
     public Type getType() {
@@ -33,6 +43,25 @@ public final class Token {
         return index;
     }
 
+    /**
+     * Returns the symbol id of an identifier, or -1 if the token is not an
+     * interned identifier.
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the keyword id of an identifier (such as {@link SymbolTable#LET}),
+     * or -1 if the token is not a keyword.
+     */
+    public int getKeyword() {
+        if (symbol >= 0) {
+            return symbol < SymbolTable.KEYWORDS ? symbol : -1;
+        }
+        return type == Type.IDENTIFIER ? SymbolTable.keyword(literal, 0, literal.length()) : -1;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof Token
@@ -0,0 +1,319 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact list of tokens stored as parallel arrays of type, start offset
+ * and length into the text they were lexed from. Unlike a {@code List<Token>},
+ * adding a token allocates nothing; the literal of a token is only created
+ * when {@link #getLiteral(int)} is called.
+ *
+ * Identifiers are interned into a {@link SymbolTable} as they are added, so
+ * their literals share one string per name and keywords can be told apart by
+ * id alone.
+ */
+public final class TokenBuffer {
+
+    private CharSequence source;
+    private SymbolTable table;
+    private int[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] indices;
+    private int[] symbols;
+    private int size = 0;
+    //true if the source is a copy of the tokens' characters, which is trimmed as tokens are discarded
+    private boolean copied = false;
+    private volatile LineIndex lines = null;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, 16);
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this(source, capacity, new SymbolTable());
+    }
+
+    /**
+     * Creates a buffer interning identifiers into the given table, which may
+     * be shared with other buffers. A null table leaves identifiers without a
+     * symbol, for buffers that are only copied into an interning one later.
+     */
+    public TokenBuffer(CharSequence source, int capacity, SymbolTable table) {
+        this.source = source;
+        this.table = table;
+        this.kinds = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.indices = starts;
+        this.symbols = new int[capacity];
+    }
+
+    /**
+     * Creates a buffer holding the given tokens. Since the tokens may not come
+     * from a single source, their literals are copied into a shared text and
+     * the original indices are kept separately.
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        StringBuilder text = new StringBuilder();
+        TokenBuffer buffer = new TokenBuffer(text, Math.max(tokens.size(), 1));
+        buffer.indices = new int[buffer.starts.length];
+        for (Token token : tokens) {
+            int start = text.length();
+            text.append(token.getLiteral());
+            buffer.add(token.getType(), start, token.getLiteral().length(), token.getIndex());
+        }
+        return buffer;
+    }
+
+    /**
+     * Creates a buffer keeping its own copy of the characters of its tokens,
+     * for tokens lexed from a stream that does not keep them. The tokens keep
+     * their indices in the stream.
+     */
+    static TokenBuffer copying(int capacity, SymbolTable table) {
+        TokenBuffer buffer = new TokenBuffer(new StringBuilder(), capacity, table);
+        buffer.indices = new int[capacity];
+        buffer.copied = true;
+        return buffer;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public SymbolTable getSymbols() {
+        return table;
+    }
+
+    /**
+     * Returns the lines of the source, for turning token indices into lines
+     * and columns. Only available when the tokens index into their source.
+     */
+    public LineIndex getLines() {
+        if (!isIndexed()) {
+            throw new IllegalStateException("The tokens were not lexed from this buffer's source.");
+        }
+        LineIndex lines = this.lines;
+        if (lines == null || lines.getSource() != source) {
+            lines = new LineIndex(source);
+            this.lines = lines;
+        }
+        return lines;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends a token covering {@code length} characters of the source
+     * starting at {@code start}, which is also the token's index.
+     */
+    public void add(Token.Type type, int start, int length) {
+        add(type, start, length, start);
+    }
+
+    /**
+     * Appends a token to a buffer created by {@link #copying}, copying its
+     * characters from {@code start} in the text it was lexed from.
+     */
+    void append(Token.Type type, CharSequence text, int start, int length, int index) {
+        StringBuilder copy = (StringBuilder) source;
+        int offset = copy.length();
+        copy.append(text, start, start + length);
+        add(type, offset, length, index);
+    }
+
+    private void add(Token.Type type, int start, int length, int index) {
+        if (size == kinds.length) {
+            grow();
+        }
+        if (type == Token.Type.IDENTIFIER && table != null) {
+            symbols[size] = table.intern(source, start, length);
+            kinds[size] = TokenKind.identifier(symbols[size]);
+        } else {
+            symbols[size] = -1;
+            kinds[size] = TokenKind.of(type, source, start, length);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        indices[size] = index;
+        size++;
+    }
+
+    /**
+     * Appends tokens {@code from} (inclusive) to {@code to} (exclusive) of
+     * another buffer, moving their offsets by {@code shift}. The other buffer
+     * must be over the same source, or one that matches it after shifting.
+     */
+    void addAll(TokenBuffer tokens, int from, int to, int shift) {
+        int count = to - from;
+        while (size + count > kinds.length) {
+            grow();
+        }
+        System.arraycopy(tokens.kinds, from, kinds, size, count);
+        System.arraycopy(tokens.starts, from, starts, size, count);
+        System.arraycopy(tokens.lengths, from, lengths, size, count);
+        if (indices != starts) {
+            System.arraycopy(tokens.indices, from, indices, size, count);
+        }
+        if (tokens.table == table) {
+            System.arraycopy(tokens.symbols, from, symbols, size, count);
+        } else {
+            //ids from another table (or none) mean nothing here, so the names are interned again
+            for (int i = 0; i < count; i++) {
+                int token = from + i;
+                boolean identifier = TokenKind.getType(tokens.kinds[token]) == Token.Type.IDENTIFIER && table != null;
+                symbols[size + i] = identifier ? table.intern(tokens.source, tokens.starts[token], tokens.lengths[token]) : -1;
+            }
+        }
+        if (shift != 0) {
+            for (int i = size; i < size + count; i++) {
+                starts[i] += shift;
+                if (indices != starts) {
+                    indices[i] += shift;
+                }
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Removes every token and starts over on a new source, keeping the
+     * capacity and symbol table, so a buffer can be refilled without
+     * allocating.
+     */
+    public void reset(CharSequence source) {
+        reset(source, table);
+    }
+
+    //same as reset, but interns identifiers into a new table from now on
+    void reset(CharSequence source, SymbolTable table) {
+        this.source = source;
+        this.table = table;
+        this.indices = starts;
+        this.copied = false;
+        this.size = 0;
+    }
+
+    /**
+     * Removes the first {@code count} tokens, shifting the rest down, so that a
+     * buffer used as a sliding window over a {@link TokenSource} stays small.
+     */
+    void discard(int count) {
+        int remaining = size - count;
+        if (copied) {
+            //the copied characters of the dropped tokens come first, so they are dropped too
+            int dropped = remaining > 0 ? starts[count] : source.length();
+            ((StringBuilder) source).delete(0, dropped);
+            for (int i = count; i < size; i++) {
+                starts[i] -= dropped;
+            }
+        }
+        System.arraycopy(kinds, count, kinds, 0, remaining);
+        System.arraycopy(starts, count, starts, 0, remaining);
+        System.arraycopy(lengths, count, lengths, 0, remaining);
+        if (indices != starts) {
+            System.arraycopy(indices, count, indices, 0, remaining);
+        }
+        System.arraycopy(symbols, count, symbols, 0, remaining);
+        size = remaining;
+    }
+
+    /**
+     * Returns true if the tokens index directly into the source, as opposed to
+     * a buffer created from a list of tokens.
+     */
+    boolean isIndexed() {
+        return indices == starts;
+    }
+
+    public Token.Type getType(int i) {
+        return TokenKind.getType(kinds[check(i)]);
+    }
+
+    /**
+     * Returns the {@link TokenKind} of the token, which tells keywords and
+     * operators apart without looking at the literal.
+     */
+    public int getKind(int i) {
+        return kinds[check(i)];
+    }
+
+    public int getIndex(int i) {
+        return indices[check(i)];
+    }
+
+    public int getLength(int i) {
+        return lengths[check(i)];
+    }
+
+    /**
+     * Returns the offset of the token in {@link #getSource()}, which is its
+     * index unless the buffer was created from a list of tokens.
+     */
+    public int getStart(int i) {
+        return starts[check(i)];
+    }
+
+    public String getLiteral(int i) {
+        if (symbols[check(i)] >= 0) {
+            return table.getName(symbols[i]);
+        }
+        int start = starts[i];
+        return source.subSequence(start, start + lengths[i]).toString();
+    }
+
+    /**
+     * Returns the symbol id of an identifier, or -1 for other tokens.
+     */
+    public int getSymbol(int i) {
+        return symbols[check(i)];
+    }
+
+    /**
+     * Returns the keyword id of an identifier, or -1 if it is not a keyword.
+     */
+    public int getKeyword(int i) {
+        int kind = kinds[check(i)];
+        return kind < SymbolTable.KEYWORDS ? kind : -1;
+    }
+
+    public Token get(int i) {
+        return new Token(getType(i), getLiteral(i), getIndex(i), symbols[i]);
+    }
+
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(get(i));
+        }
+        return tokens;
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        }
+        return i;
+    }
+
+    private void grow() {
+        int capacity = Math.max(kinds.length * 2, 16);
+        boolean shared = indices == starts;
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        indices = shared ? starts : Arrays.copyOf(indices, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+}
@@ -0,0 +1,154 @@
+package plc.project;
+
+/**
+ * Integer codes for the kinds of tokens, finer than a {@link Token.Type}:
+ * every keyword and operator the grammar uses has a kind of its own, so the
+ * parser can test and switch on a token with an integer comparison instead of
+ * comparing literals.
+ *
+ * The kinds of keywords are the same as their {@link SymbolTable} ids.
+ * Identifiers that are not keywords, literals, and operators the grammar does
+ * not use each have one kind per {@link Token.Type}.
+ */
+public final class TokenKind {
+
+    public static final int LET = SymbolTable.LET;
+    public static final int DEF = SymbolTable.DEF;
+    public static final int DO = SymbolTable.DO;
+    public static final int END = SymbolTable.END;
+    public static final int IF = SymbolTable.IF;
+    public static final int ELSE = SymbolTable.ELSE;
+    public static final int FOR = SymbolTable.FOR;
+    public static final int IN = SymbolTable.IN;
+    public static final int WHILE = SymbolTable.WHILE;
+    public static final int RETURN = SymbolTable.RETURN;
+    public static final int AND = SymbolTable.AND;
+    public static final int OR = SymbolTable.OR;
+    public static final int NIL = SymbolTable.NIL;
+    public static final int TRUE = SymbolTable.TRUE;
+    public static final int FALSE = SymbolTable.FALSE;
+
+    public static final int IDENTIFIER = SymbolTable.KEYWORDS;
+    public static final int INTEGER = IDENTIFIER + 1;
+    public static final int DECIMAL = IDENTIFIER + 2;
+    public static final int CHARACTER = IDENTIFIER + 3;
+    public static final int STRING = IDENTIFIER + 4;
+
+    public static final int LESS = IDENTIFIER + 5;
+    public static final int LESS_EQUAL = IDENTIFIER + 6;
+    public static final int GREATER = IDENTIFIER + 7;
+    public static final int GREATER_EQUAL = IDENTIFIER + 8;
+    public static final int EQUAL_EQUAL = IDENTIFIER + 9;
+    public static final int NOT_EQUAL = IDENTIFIER + 10;
+    public static final int EQUAL = IDENTIFIER + 11;
+    public static final int PLUS = IDENTIFIER + 12;
+    public static final int MINUS = IDENTIFIER + 13;
+    public static final int STAR = IDENTIFIER + 14;
+    public static final int SLASH = IDENTIFIER + 15;
+    public static final int LEFT_PAREN = IDENTIFIER + 16;
+    public static final int RIGHT_PAREN = IDENTIFIER + 17;
+    public static final int COMMA = IDENTIFIER + 18;
+    public static final int DOT = IDENTIFIER + 19;
+    public static final int COLON = IDENTIFIER + 20;
+    public static final int SEMICOLON = IDENTIFIER + 21;
+    public static final int OPERATOR = IDENTIFIER + 22;
+    public static final int KINDS = IDENTIFIER + 23;
+
+    //literal of each keyword and operator kind, or null for kinds with many literals
+    private static final String[] NAMES = {
+            "LET", "DEF", "DO", "END", "IF", "ELSE", "FOR", "IN",
+            "WHILE", "RETURN", "AND", "OR", "NIL", "TRUE", "FALSE",
+            null, null, null, null, null,
+            "<", "<=", ">", ">=", "==", "!=", "=", "+", "-", "*", "/",
+            "(", ")", ",", ".", ":", ";", null
+    };
+
+    private static final Token.Type[] TYPES = new Token.Type[KINDS];
+
+    static {
+        for (int kind = 0; kind < KINDS; kind++) {
+            TYPES[kind] = kind <= IDENTIFIER ? Token.Type.IDENTIFIER : kind >= LESS ? Token.Type.OPERATOR : null;
+        }
+        TYPES[INTEGER] = Token.Type.INTEGER;
+        TYPES[DECIMAL] = Token.Type.DECIMAL;
+        TYPES[CHARACTER] = Token.Type.CHARACTER;
+        TYPES[STRING] = Token.Type.STRING;
+    }
+
+    private TokenKind() {}
+
+    /**
+     * Returns the kind of the token of the given type made of the characters.
+     */
+    public static int of(Token.Type type, CharSequence source, int start, int length) {
+        switch (type) {
+            case IDENTIFIER:
+                int keyword = SymbolTable.keyword(source, start, length);
+                return keyword >= 0 ? keyword : IDENTIFIER;
+            case INTEGER:
+                return INTEGER;
+            case DECIMAL:
+                return DECIMAL;
+            case CHARACTER:
+                return CHARACTER;
+            case STRING:
+                return STRING;
+            default:
+                return operator(source, start, length);
+        }
+    }
+
+    /**
+     * Returns the kind of an identifier with the given symbol id, which is
+     * already known to be a keyword or not.
+     */
+    public static int identifier(int symbol) {
+        return symbol < SymbolTable.KEYWORDS ? symbol : IDENTIFIER;
+    }
+
+    public static Token.Type getType(int kind) {
+        return TYPES[kind];
+    }
+
+    /**
+     * Returns the literal of a keyword or operator kind, or null if tokens of
+     * the kind can have different literals.
+     */
+    public static String getName(int kind) {
+        return NAMES[kind];
+    }
+
+    private static int operator(CharSequence source, int start, int length) {
+        if (length == 2) {
+            if (source.charAt(start + 1) != '=') {
+                return OPERATOR;
+            }
+            switch (source.charAt(start)) {
+                case '<': return LESS_EQUAL;
+                case '>': return GREATER_EQUAL;
+                case '=': return EQUAL_EQUAL;
+                case '!': return NOT_EQUAL;
+                default: return OPERATOR;
+            }
+        } else if (length != 1) {
+            return OPERATOR;
+        }
+        switch (source.charAt(start)) {
+            case '<': return LESS;
+            case '>': return GREATER;
+            case '=': return EQUAL;
+            case '+': return PLUS;
+            case '-': return MINUS;
+            case '*': return STAR;
+            case '/': return SLASH;
+            case '(': return LEFT_PAREN;
+            case ')': return RIGHT_PAREN;
+            case ',': return COMMA;
+            case '.': return DOT;
+            case ':': return COLON;
+            case ';': return SEMICOLON;
+            default: return OPERATOR;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package plc.project;
+
+/**
+ * A source of tokens which are pulled one at a time, such as a {@link Lexer}
+ * lexing on demand. The {@link Parser} reads from a source through a small
+ * window of tokens, so the lexer and parser run fused in a single pass
+ * without the whole list of tokens ever being in memory.
+ */
+public interface TokenSource {
+
+    /**
+     * Creates an empty buffer over the text this source lexes, which its
+     * tokens can be appended to.
+     */
+    TokenBuffer newBuffer(int capacity);
+
+    /**
+     * Appends the next token to a buffer created by {@link #newBuffer(int)},
+     * returning false once there are no more tokens.
+     */
+    boolean next(TokenBuffer tokens);
+
+}
@@ -0,0 +1,54 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * The spans of whitespace and escapes between tokens, recorded by a lexer
+ * after {@link Lexer#recordTrivia()}. Each span covers a whole run, so there
+ * is at most one span between any two tokens.
+ */
+public final class TriviaTable {
+
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int size = 0;
+
+    void add(int start, int length) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int i) {
+        return starts[check(i)];
+    }
+
+    public int getLength(int i) {
+        return lengths[check(i)];
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size);
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("TriviaTable{");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(starts[i]).append('+').append(lengths[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+}